@@ -0,0 +1,29 @@
+package com.riversand.connectors.gdsntransformation.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the transformation benchmarks with the GC profiler, so ops/s is reported together with the bytes allocated
+ * per operation ({@code gc.alloc.rate.norm}). Regular JMH command line options are accepted, e.g.
+ * {@code -p shape=NESTED -p scale=200} to run a single configuration.
+ */
+public final class BenchmarkRunner {
+
+   private BenchmarkRunner() {
+   }
+
+   public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+      Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .include(GDSNTransformerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+      new Runner(options).run();
+   }
+}
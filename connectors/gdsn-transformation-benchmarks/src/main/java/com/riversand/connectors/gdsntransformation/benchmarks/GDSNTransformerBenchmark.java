@@ -0,0 +1,87 @@
+package com.riversand.connectors.gdsntransformation.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonObject;
+
+import com.riversand.connectors.gdsntransformation.GDSNTransformer;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.interfaces.models.IRecord;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Throughput of {@link GDSNTransformer} on synthetic records. One transformer is built per trial, as a job does, so
+ * the measured operation is the transformation of a single record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GDSNTransformerBenchmark {
+
+   @Param({"FLAT", "NESTED", "LOCALIZABLE_UOM", "RELATIONSHIPS"})
+   public RecordShape shape;
+
+   /**
+    * Number of mapped attributes, or of relationships.
+    */
+   @Param({"20", "200"})
+   public int scale;
+
+   @Param({"0", "4"})
+   public int contexts;
+
+   private GDSNTransformer transformer;
+   private JsonRecord record;
+   private String serializedRecord;
+
+   @Setup(Level.Trial)
+   public void setUp() {
+      transformer = new GDSNTransformer(SyntheticData.connectContext(shape, scale));
+      JsonObject entity = SyntheticData.entity(shape, scale, contexts);
+      record = new JsonRecord(entity, null);
+      serializedRecord = GsonBuilder.getGsonInstance().toJson(entity);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() throws Exception {
+      transformer.close();
+   }
+
+   /**
+    * Transformation of a parsed record.
+    */
+   @Benchmark
+   public IRecord transform() {
+      return transformer.transform(record, null);
+   }
+
+   /**
+    * Streaming transformation, from the serialized entity to the serialized result.
+    */
+   @Benchmark
+   public String transformStreaming() throws IOException {
+      StringWriter writer = new StringWriter();
+      transformer.transform(new StringReader(serializedRecord), writer);
+      return writer.toString();
+   }
+}
@@ -0,0 +1,23 @@
+package com.riversand.connectors.gdsntransformation.benchmarks;
+
+/**
+ * Kinds of synthetic records and mappings generated for the benchmarks.
+ */
+public enum RecordShape {
+   /**
+    * Single valued and collection string attributes.
+    */
+   FLAT,
+   /**
+    * Grouped attributes mapped through oneToTwoLevel and oneToThreeLevel mappings.
+    */
+   NESTED,
+   /**
+    * Localizable attributes with values in several locales, and collection attributes with units of measure.
+    */
+   LOCALIZABLE_UOM,
+   /**
+    * A few flat attributes and many relationships mapped with relationship attribute and related entity mappings.
+    */
+   RELATIONSHIPS
+}
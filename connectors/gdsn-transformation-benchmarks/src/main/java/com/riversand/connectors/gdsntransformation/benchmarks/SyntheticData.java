@@ -0,0 +1,271 @@
+package com.riversand.connectors.gdsntransformation.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.config.RSConnectContext;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.common.helpers.RSExtensionConnectContextSerializer;
+
+/**
+ * Generates transform profiles and matching RSJSON entities of a given shape. The scale sets the number of mapped
+ * attributes (or relationships for {@link RecordShape#RELATIONSHIPS}), every context repeats the entity attributes
+ * with context specific values. Values are derived from their position, so generated data is the same on every run.
+ */
+public final class SyntheticData {
+   static final String ENTITY_TYPE = "smtradeitem";
+   private static final String PROFILE = "benchmarkProfile.json";
+   private static final String[] LOCALES = {"en-US", "fr-FR", "de-DE"};
+   private static final int COLLECTION_SIZE = 3;
+   private static final int GROUP_COUNT = 3;
+   private static final int INNER_GROUP_COUNT = 2;
+   private static final int CHILDREN_PER_GROUP = 3;
+
+   private SyntheticData() {
+   }
+
+   /**
+    * Create the connect context of a transform profile mapping every attribute of the generated entities.
+    *
+    * @param shape - kind of mappings
+    * @param scale - number of mapped attributes, or of relationships
+    * @return connect context
+    */
+   public static RSConnectContext connectContext(RecordShape shape, int scale) {
+      JsonObject profile;
+      try (InputStream profileStream = SyntheticData.class.getResourceAsStream(PROFILE)) {
+         profile = GsonBuilder.getGsonInstance().fromJson(new InputStreamReader(profileStream, StandardCharsets.UTF_8), JsonObject.class);
+      } catch (Exception ex) {
+         throw new IllegalStateException("Failed to read " + PROFILE, ex);
+      }
+      JsonObject transform = profile.getAsJsonObject("connectProfile").getAsJsonObject("transform");
+      transform.add("fieldMap", fieldMap(shape, scale));
+      transform.getAsJsonObject("relationships").add("fieldMap", relationshipFieldMap(shape));
+      byte[] json = GsonBuilder.getGsonInstance().toJson(profile).getBytes(StandardCharsets.UTF_8);
+      return RSExtensionConnectContextSerializer.fromJson(null, new ByteArrayInputStream(json));
+   }
+
+   /**
+    * Create an entity with the attributes mapped by {@link #connectContext(RecordShape, int)}.
+    *
+    * @param shape    - kind of attributes
+    * @param scale    - number of attributes, or of relationships
+    * @param contexts - number of contexts, each holding its own copy of the attributes
+    * @return RSJSON entity
+    */
+   public static JsonObject entity(RecordShape shape, int scale, int contexts) {
+      JsonObject data = new JsonObject();
+      data.add("attributes", attributes(shape, scale, "self"));
+      if (contexts > 0) {
+         JsonArray contextArray = new JsonArray();
+         for (int k = 0; k < contexts; k++) {
+            JsonObject definition = new JsonObject();
+            definition.addProperty("channel", "channel" + k);
+            JsonObject context = new JsonObject();
+            context.add("context", definition);
+            context.add("attributes", attributes(shape, scale, "channel" + k));
+            contextArray.add(context);
+         }
+         data.add("contexts", contextArray);
+      }
+      if (shape == RecordShape.RELATIONSHIPS) {
+         JsonObject relationships = new JsonObject();
+         relationships.add("childgtins", relationships(scale));
+         data.add("relationships", relationships);
+      }
+
+      JsonObject entity = new JsonObject();
+      entity.addProperty("id", "synthetic_" + shape.name().toLowerCase() + "_" + scale);
+      entity.addProperty("name", "synthetic");
+      entity.addProperty("type", ENTITY_TYPE);
+      entity.add("data", data);
+      return entity;
+   }
+
+   private static JsonArray fieldMap(RecordShape shape, int scale) {
+      JsonArray fieldMap = new JsonArray();
+      switch (shape) {
+         case FLAT:
+            for (int i = 0; i < scale; i++) {
+               if (isCollection(i)) {
+                  fieldMap.add(mapping("@attr(sm_flat_" + i + ")", "@path(tradeItemInformation[0].flatCollection_" + i + "[%d].__value__)", "string", true, false, false));
+               } else {
+                  fieldMap.add(mapping("@attr(sm_flat_" + i + ")", "@path(tradeItemInformation[0].flatAttribute_" + i + ")", "string", false, false, false));
+               }
+            }
+            break;
+         case NESTED:
+            for (int p = 0; p < getParentCount(scale); p++) {
+               String parent = "sm_nested_" + p;
+               JsonArray children = new JsonArray();
+               boolean threeLevel = p % 2 == 1;
+               for (int c = 0; c < CHILDREN_PER_GROUP; c++) {
+                  if (threeLevel) {
+                     children.add(mapping("@attr(" + parent + ".group[%d].sm_inner.group[%d].sm_leaf_" + c + ")",
+                           "@path(nested_" + p + "[%d].inner[%d].leaf_" + c + ")", "string", false, false, false));
+                  } else {
+                     children.add(mapping("@attr(" + parent + ".group[%d].sm_child_" + c + ")",
+                           "@path(nested_" + p + "[%d].child_" + c + ")", "string", false, false, false));
+                  }
+               }
+               JsonObject mapping = mapping("@attr(" + parent + ")", "@path(nested_" + p + "[%d])", threeLevel ? "oneToThreeLevel" : "oneToTwoLevel", true, false, false);
+               mapping.add("childFieldMappings", children);
+               fieldMap.add(mapping);
+            }
+            break;
+         case LOCALIZABLE_UOM:
+            for (int i = 0; i < scale; i++) {
+               if (i % 2 == 0) {
+                  fieldMap.add(mapping("@attr(sm_claim_" + i + ")", "@path(tradeItemInformation[0].claim_" + i + "[%d])", "string", false, true, false));
+               } else {
+                  fieldMap.add(mapping("@attr(sm_amount_" + i + ")", "@path(tradeItemInformation[0].amount_" + i + "[%d].@measurementUnitCode#@#tradeItemInformation[0].amount_" + i + "[%d].__value__)",
+                        "string", true, false, true));
+               }
+            }
+            break;
+         case RELATIONSHIPS:
+            fieldMap.add(mapping("@attr(gtin)", "@path(gtin)", "string", false, false, false));
+            break;
+         default:
+            throw new IllegalArgumentException("Unsupported shape " + shape);
+      }
+      return fieldMap;
+   }
+
+   private static JsonArray relationshipFieldMap(RecordShape shape) {
+      JsonArray fieldMap = new JsonArray();
+      if (shape == RecordShape.RELATIONSHIPS) {
+         fieldMap.add(mapping("@relAttr(childgtins, totalQuantityOfNextLowerLevelTradeItem)",
+               "@relPath(nextLowerLevelTradeItemInformation.childTradeItem[%d], quantityOfNextLowerLevelTradeItem)", null, false, false, false));
+         fieldMap.add(mapping("@relToAttr(childgtins, tradeitem, gtin)",
+               "@relPath(nextLowerLevelTradeItemInformation.childTradeItem[%d], gtin)", null, false, false, false));
+      }
+      return fieldMap;
+   }
+
+   private static JsonObject mapping(String source, String destination, String type, boolean collection, boolean localizable, boolean uom) {
+      JsonObject mapping = new JsonObject();
+      mapping.addProperty("id", (source + destination).hashCode());
+      mapping.addProperty("source", source);
+      mapping.addProperty("destination", destination);
+      mapping.addProperty("entityType", ENTITY_TYPE);
+      if (type != null) {
+         mapping.addProperty("type", type);
+      }
+      mapping.addProperty("hasUOM", uom);
+      mapping.addProperty("isLocalizable", localizable);
+      mapping.addProperty("collectionType", collection);
+      mapping.addProperty("isKeyValuePair", true);
+      return mapping;
+   }
+
+   private static JsonObject attributes(RecordShape shape, int scale, String prefix) {
+      JsonObject attributes = new JsonObject();
+      switch (shape) {
+         case FLAT:
+            for (int i = 0; i < scale; i++) {
+               attributes.add("sm_flat_" + i, values(prefix + "_" + i, isCollection(i) ? COLLECTION_SIZE : 1, false, null));
+            }
+            break;
+         case NESTED:
+            for (int p = 0; p < getParentCount(scale); p++) {
+               JsonArray groups = new JsonArray();
+               for (int g = 0; g < GROUP_COUNT; g++) {
+                  JsonObject group = new JsonObject();
+                  if (p % 2 == 1) {
+                     JsonArray innerGroups = new JsonArray();
+                     for (int n = 0; n < INNER_GROUP_COUNT; n++) {
+                        JsonObject innerGroup = new JsonObject();
+                        for (int c = 0; c < CHILDREN_PER_GROUP; c++) {
+                           innerGroup.add("sm_leaf_" + c, values(prefix + "_" + p + "_" + g + "_" + n + "_" + c, 1, false, null));
+                        }
+                        innerGroups.add(innerGroup);
+                     }
+                     group.add("sm_inner", group(innerGroups));
+                  } else {
+                     for (int c = 0; c < CHILDREN_PER_GROUP; c++) {
+                        group.add("sm_child_" + c, values(prefix + "_" + p + "_" + g + "_" + c, 1, false, null));
+                     }
+                  }
+                  groups.add(group);
+               }
+               attributes.add("sm_nested_" + p, group(groups));
+            }
+            break;
+         case LOCALIZABLE_UOM:
+            for (int i = 0; i < scale; i++) {
+               if (i % 2 == 0) {
+                  attributes.add("sm_claim_" + i, values(prefix + "_" + i, LOCALES.length, true, null));
+               } else {
+                  attributes.add("sm_amount_" + i, values(String.valueOf(i), COLLECTION_SIZE, false, "KGM"));
+               }
+            }
+            break;
+         case RELATIONSHIPS:
+            attributes.add("gtin", values(prefix, 1, false, null));
+            break;
+         default:
+            throw new IllegalArgumentException("Unsupported shape " + shape);
+      }
+      return attributes;
+   }
+
+   private static JsonArray relationships(int count) {
+      JsonArray relationships = new JsonArray();
+      for (int i = 0; i < count; i++) {
+         JsonObject attributes = new JsonObject();
+         attributes.add("totalQuantityOfNextLowerLevelTradeItem", values(String.valueOf(i + 1), 1, false, null));
+         JsonObject relToAttributes = new JsonObject();
+         relToAttributes.add("gtin", values(String.format("%013d", i), 1, false, null));
+         JsonObject relToData = new JsonObject();
+         relToData.add("attributes", relToAttributes);
+         JsonObject relTo = new JsonObject();
+         relTo.addProperty("id", "child_" + i);
+         relTo.addProperty("type", "tradeitem");
+         relTo.add("data", relToData);
+
+         JsonObject relationship = new JsonObject();
+         relationship.addProperty("id", "childgtins_child_" + i);
+         relationship.add("attributes", attributes);
+         relationship.add("relTo", relTo);
+         relationships.add(relationship);
+      }
+      return relationships;
+   }
+
+   private static JsonObject group(JsonArray groups) {
+      JsonObject attribute = new JsonObject();
+      attribute.add("group", groups);
+      return attribute;
+   }
+
+   private static JsonObject values(String value, int count, boolean localized, String uom) {
+      JsonArray values = new JsonArray();
+      for (int i = 0; i < count; i++) {
+         JsonObject entry = new JsonObject();
+         entry.addProperty("source", "internal");
+         entry.addProperty("locale", localized ? LOCALES[i % LOCALES.length] : LOCALES[0]);
+         entry.addProperty("value", count == 1 ? value : value + "_" + i);
+         if (uom != null) {
+            entry.addProperty("uom", uom);
+         }
+         values.add(entry);
+      }
+      JsonObject attribute = new JsonObject();
+      attribute.add("values", values);
+      return attribute;
+   }
+
+   private static boolean isCollection(int attribute) {
+      return attribute % 4 == 3;
+   }
+
+   private static int getParentCount(int scale) {
+      return Math.max(1, scale / (GROUP_COUNT * CHILDREN_PER_GROUP));
+   }
+}
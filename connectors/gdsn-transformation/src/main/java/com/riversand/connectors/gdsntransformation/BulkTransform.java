@@ -0,0 +1,450 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManager;
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManagerLogger;
+import com.riversand.rsconnect.common.config.RSConnectContext;
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
+import com.riversand.rsconnect.common.helpers.ConnectRuntimeException;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.common.helpers.RSExtensionConnectContextSerializer;
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+import com.riversand.rsconnect.interfaces.models.IRecord;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Transforms a file of RSJSON entities, one per line, outside of the connector runtime. The input is memory mapped
+ * and split on line boundaries into chunks that are transformed in parallel; the output is written in input order,
+ * as one transformed entity per line or as the trade items of a GS1 XML catalogue item notification.
+ * <p>
+ * Entities are read through the {@link SourceProjection} of the transformer. A line that can not be read or
+ * transformed is logged with its line number and skipped; the mappings that failed for a line that was transformed
+ * are logged with its line number too. At most two chunks per thread are held in memory.
+ */
+public final class BulkTransform implements AutoCloseable {
+   private static ProfilerManagerLogger pmLogger = ProfilerManager.getLogger(BulkTransform.class);
+
+   public static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+   /**
+    * Format of the output file.
+    */
+   public enum OutputFormat {
+      NDJSON,
+      GDSN
+   }
+
+   /**
+    * Receives the progress of a run after every chunk written.
+    */
+   public interface ProgressListener {
+      void progress(Progress progress);
+   }
+
+   private final GDSNTransformer transformer;
+   private final int parallelism;
+   private final int chunkSize;
+   private final ExecutorService executor;
+
+   /**
+    * Create an engine running on its own threads.
+    *
+    * @param transformer - transformer of the entities, not closed with the engine
+    * @param parallelism - number of chunks transformed at the same time
+    * @param chunkSize   - size of the chunks in bytes; a line longer than that makes a chunk of its own
+    */
+   public BulkTransform(GDSNTransformer transformer, int parallelism, int chunkSize) {
+      if (parallelism < 1 || chunkSize < 1) {
+         throw new ConnectIllegalArgumentException("RSC7820", "parallelism and chunkSize must be positive");
+      }
+      this.transformer = transformer;
+      this.parallelism = parallelism;
+      this.chunkSize = chunkSize;
+      this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+         Thread thread = new Thread(runnable, "gdsn-bulk-transform");
+         thread.setDaemon(true);
+         return thread;
+      });
+   }
+
+   /**
+    * Transform a file.
+    *
+    * @param input    - RSJSON entities, one per line
+    * @param output   - destination file, replaced when it exists
+    * @param format   - output format
+    * @param listener - receives the progress, may be null
+    * @return final progress of the run
+    * @throws IOException when the input can not be read or the output can not be written
+    */
+   public Progress run(Path input, Path output, OutputFormat format, ProgressListener listener) throws IOException {
+      long start = System.nanoTime();
+      try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ);
+           Output destination = format == OutputFormat.GDSN ? new GdsnOutput(output) : new NdjsonOutput(output)) {
+         long size = channel.size();
+         Progress progress = new Progress(0, 0, 0, 0, size, 0);
+         Deque<Future<Chunk>> pending = new ArrayDeque<>();
+         long lineNumber = 1;
+         long position = 0;
+         try {
+            while (position < size) {
+               long end = findLineEnd(channel, Math.min(size, position + chunkSize) - 1, size);
+               long chunkStart = position;
+               ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, chunkStart, end - chunkStart);
+               pending.add(executor.submit(() -> transformChunk(buffer, chunkStart, format)));
+               position = end;
+               if (pending.size() >= parallelism * 2) {
+                  lineNumber = write(pending.poll(), destination, lineNumber);
+                  progress = report(destination, size, start, listener);
+               }
+            }
+            while (!pending.isEmpty()) {
+               lineNumber = write(pending.poll(), destination, lineNumber);
+               progress = report(destination, size, start, listener);
+            }
+         } catch (RuntimeException | IOException ex) {
+            // Chunks still queued or running would never be written.
+            for (Future<Chunk> future : pending) {
+               future.cancel(true);
+            }
+            throw ex;
+         }
+         return progress;
+      }
+   }
+
+   /**
+    * Find the end of the line containing a position: the position just after its line feed, or the end of the file.
+    */
+   private static long findLineEnd(FileChannel channel, long position, long size) throws IOException {
+      ByteBuffer buffer = ByteBuffer.allocate(8192);
+      while (position < size) {
+         buffer.clear();
+         int read = channel.read(buffer, position);
+         if (read <= 0) {
+            break;
+         }
+         for (int i = 0; i < read; i++) {
+            if (buffer.get(i) == '\n') {
+               return position + i + 1;
+            }
+         }
+         position += read;
+      }
+      return size;
+   }
+
+   private Chunk transformChunk(ByteBuffer buffer, long offset, OutputFormat format) {
+      CharBuffer chars = StandardCharsets.UTF_8.decode(buffer);
+      char[] array = chars.array();
+      int limit = chars.arrayOffset() + chars.limit();
+      Gson gson = GsonBuilder.getGsonInstance();
+      Chunk chunk = new Chunk(offset, buffer.limit());
+      int lineStart = chars.arrayOffset();
+      for (int line = 0; lineStart < limit; line++) {
+         int lineEnd = lineStart;
+         while (lineEnd < limit && array[lineEnd] != '\n') {
+            lineEnd++;
+         }
+         if (!isBlank(array, lineStart, lineEnd)) {
+            try {
+               JsonReader reader = gson.newJsonReader(new CharArrayReader(array, lineStart, lineEnd - lineStart));
+               TransformErrors errors = new TransformErrors();
+               IRecord record = transformer.transform(new JsonRecord(transformer.getSourceProjection().read(reader), null), null, errors);
+               if (format == OutputFormat.GDSN) {
+                  chunk.records.add(record);
+               } else {
+                  chunk.json.append(gson.toJson(((JsonRecord) record).getJsonObject())).append('\n');
+               }
+               chunk.transformed++;
+               if (!errors.isEmpty()) {
+                  chunk.partialLines.add(line);
+                  chunk.mappingErrors.add(errors);
+               }
+            } catch (Exception ex) {
+               chunk.failedLines.add(line);
+               chunk.failures.add(ex);
+            }
+         }
+         chunk.lines++;
+         lineStart = lineEnd + 1;
+      }
+      return chunk;
+   }
+
+   private static boolean isBlank(char[] array, int start, int end) {
+      for (int i = start; i < end; i++) {
+         if (!Character.isWhitespace(array[i])) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Write a transformed chunk, in input order.
+    *
+    * @return number of the first line of the next chunk
+    */
+   private long write(Future<Chunk> future, Output destination, long lineNumber) throws IOException {
+      Chunk chunk;
+      try {
+         chunk = future.get();
+      } catch (InterruptedException ex) {
+         Thread.currentThread().interrupt();
+         throw new ConnectRuntimeException("RSC7820", "Bulk transform interrupted");
+      } catch (ExecutionException ex) {
+         // The message may be null, the failure is named by its class too.
+         ConnectRuntimeException failure = new ConnectRuntimeException("RSC7820", "Bulk transform failed: " + ex.getCause());
+         failure.initCause(ex.getCause());
+         throw failure;
+      }
+      for (int i = 0; i < chunk.failures.size(); i++) {
+         pmLogger.error(Constants.RSCONNECT_SERVICE, "RSC7273", "Failed to transform record at line " + (lineNumber + chunk.failedLines.get(i)) + ": " + describe(chunk.failures.get(i)));
+      }
+      for (int i = 0; i < chunk.mappingErrors.size(); i++) {
+         pmLogger.error(Constants.RSCONNECT_SERVICE, "RSC7273", "Failed mappings of record at line " + (lineNumber + chunk.partialLines.get(i)) + ": " + chunk.mappingErrors.get(i));
+      }
+      destination.write(chunk);
+      return lineNumber + chunk.lines;
+   }
+
+   /**
+    * Describe a failure by its class and message, and those of its cause.
+    */
+   private static String describe(Throwable failure) {
+      return failure.getCause() == null ? failure.toString() : failure + " caused by " + failure.getCause();
+   }
+
+   private static Progress report(Output destination, long size, long start, ProgressListener listener) {
+      Progress next = new Progress(destination.getRecords(), destination.getFailed(), destination.getPartial(), destination.getBytes(), size,
+            System.nanoTime() - start);
+      if (listener != null) {
+         listener.progress(next);
+      }
+      return next;
+   }
+
+   @Override
+   public void close() {
+      executor.shutdown();
+   }
+
+   /**
+    * Lines of the input transformed by one task.
+    */
+   private static final class Chunk {
+      private final long offset;
+      private final int size;
+      private final StringBuilder json = new StringBuilder();
+      private final List<IRecord> records = new ArrayList<>();
+      // Line within the chunk and failure of every line that could not be transformed.
+      private final List<Integer> failedLines = new ArrayList<>();
+      private final List<Exception> failures = new ArrayList<>();
+      // Line within the chunk and failed mappings of every record transformed with failed mappings.
+      private final List<Integer> partialLines = new ArrayList<>();
+      private final List<TransformErrors> mappingErrors = new ArrayList<>();
+      private int lines;
+      private int transformed;
+
+      private Chunk(long offset, int size) {
+         this.offset = offset;
+         this.size = size;
+      }
+   }
+
+   private abstract static class Output implements AutoCloseable {
+      private long records;
+      private long failed;
+      private long partial;
+      private long bytes;
+
+      void write(Chunk chunk) throws IOException {
+         writeRecords(chunk);
+         records += chunk.transformed;
+         failed += chunk.failures.size();
+         partial += chunk.mappingErrors.size();
+         bytes = chunk.offset + chunk.size;
+      }
+
+      abstract void writeRecords(Chunk chunk) throws IOException;
+
+      @Override
+      public abstract void close() throws IOException;
+
+      long getRecords() {
+         return records;
+      }
+
+      long getFailed() {
+         return failed;
+      }
+
+      long getPartial() {
+         return partial;
+      }
+
+      long getBytes() {
+         return bytes;
+      }
+   }
+
+   private static final class NdjsonOutput extends Output {
+      private final FileChannel channel;
+
+      private NdjsonOutput(Path file) throws IOException {
+         this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+      }
+
+      @Override
+      void writeRecords(Chunk chunk) throws IOException {
+         ByteBuffer buffer = StandardCharsets.UTF_8.encode(CharBuffer.wrap(chunk.json));
+         while (buffer.hasRemaining()) {
+            channel.write(buffer);
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         channel.close();
+      }
+   }
+
+   private static final class GdsnOutput extends Output {
+      private final CatalogueItemNotificationWriter writer;
+
+      private GdsnOutput(Path file) throws IOException {
+         this.writer = CatalogueItemNotificationWriter.open(file, null);
+      }
+
+      @Override
+      void writeRecords(Chunk chunk) throws IOException {
+         for (IRecord record : chunk.records) {
+            writer.write(record);
+         }
+      }
+
+      @Override
+      public void close() throws IOException {
+         writer.close();
+      }
+   }
+
+   /**
+    * Progress of a run.
+    */
+   public static final class Progress {
+      private final long records;
+      private final long failed;
+      private final long partial;
+      private final long bytes;
+      private final long totalBytes;
+      private final long elapsedNanos;
+
+      Progress(long records, long failed, long partial, long bytes, long totalBytes, long elapsedNanos) {
+         this.records = records;
+         this.failed = failed;
+         this.partial = partial;
+         this.bytes = bytes;
+         this.totalBytes = totalBytes;
+         this.elapsedNanos = elapsedNanos;
+      }
+
+      /**
+       * Number of records transformed and written.
+       */
+      public long getRecords() {
+         return records;
+      }
+
+      /**
+       * Number of records skipped because they could not be read or transformed.
+       */
+      public long getFailed() {
+         return failed;
+      }
+
+      /**
+       * Number of records written without the output of some of their mappings, as these failed.
+       */
+      public long getPartial() {
+         return partial;
+      }
+
+      /**
+       * Number of input bytes processed.
+       */
+      public long getBytes() {
+         return bytes;
+      }
+
+      public long getTotalBytes() {
+         return totalBytes;
+      }
+
+      public long getElapsedNanos() {
+         return elapsedNanos;
+      }
+
+      public double getRecordsPerSecond() {
+         return elapsedNanos == 0 ? 0 : (records + failed) * 1e9 / elapsedNanos;
+      }
+
+      public double getMegabytesPerSecond() {
+         return elapsedNanos == 0 ? 0 : bytes * 1e9 / elapsedNanos / (1024 * 1024);
+      }
+
+      @Override
+      public String toString() {
+         return String.format(Locale.ROOT, "%d records, %d failed, %d partial, %.1f%% of %d bytes, %.0f records/s, %.1f MB/s", records, failed,
+               partial, totalBytes == 0 ? 100.0 : bytes * 100.0 / totalBytes, totalBytes, getRecordsPerSecond(), getMegabytesPerSecond());
+      }
+   }
+
+   /**
+    * Transform a file from the command line.
+    * <p>
+    * Usage: {@code BulkTransform <profile.json> <input.ndjson> <output> [ndjson|gdsn] [parallelism]}
+    */
+   public static void main(String[] args) throws Exception {
+      if (args.length < 3 || args.length > 5) {
+         System.err.println("Usage: BulkTransform <profile.json> <input.ndjson> <output> [ndjson|gdsn] [parallelism]");
+         System.exit(2);
+      }
+      OutputFormat format = args.length > 3 ? OutputFormat.valueOf(args[3].toUpperCase(Locale.ROOT)) : OutputFormat.NDJSON;
+      int parallelism = args.length > 4 ? Integer.parseInt(args[4]) : Runtime.getRuntime().availableProcessors();
+      RSConnectContext connectContext;
+      try (InputStream profile = Files.newInputStream(Paths.get(args[0]))) {
+         connectContext = RSExtensionConnectContextSerializer.fromJson(null, profile);
+      }
+      try (GDSNTransformer transformer = new GDSNTransformer(connectContext);
+           BulkTransform bulkTransform = new BulkTransform(transformer, parallelism, DEFAULT_CHUNK_SIZE)) {
+         Progress progress = bulkTransform.run(Paths.get(args[1]), Paths.get(args[2]), format, System.out::println);
+         System.out.println("Transformed " + progress.getRecords() + " records (" + progress.getFailed() + " failed, " + progress.getPartial() + " partial) in "
+               + progress.getElapsedNanos() / 1000000 + " ms to " + args[2]);
+      }
+   }
+}
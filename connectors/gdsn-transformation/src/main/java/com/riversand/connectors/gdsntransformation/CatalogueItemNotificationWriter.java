@@ -0,0 +1,182 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.helpers.ConnectRuntimeException;
+import com.riversand.rsconnect.interfaces.models.IRecord;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Writes transformed entities as the trade items of a single GS1 XML catalogue item notification. Each item is
+ * written with StAX straight from the GDSN shaped document built by {@link GDSNTransformer}, as soon as it is
+ * transformed, so no DOM is built and memory stays bounded by one item:
+ * <ul>
+ * <li>a member holding an object becomes an element, its {@code @name} members attributes of the element and its
+ * {@code __value__} member the text of the element,</li>
+ * <li>a member holding an array becomes one element per entry,</li>
+ * <li>a member holding a value becomes an element with that text,</li>
+ * <li>null members are left out.</li>
+ * </ul>
+ * The notification is written to a channel through a buffer. Its header (identification, creation date time,
+ * document status...) is given as a document following the same conventions and written before the items.
+ * <p>
+ * Not thread safe.
+ */
+public final class CatalogueItemNotificationWriter implements Closeable {
+   public static final String NAMESPACE = "urn:gs1:gdsn:catalogue_item_notification:xsd:3";
+
+   private static final String PREFIX = "catalogue_item_notification";
+   private static final String NOTIFICATION = "catalogueItemNotification";
+   private static final String CATALOGUE_ITEM = "catalogueItem";
+   private static final String TRADE_ITEM = "tradeItem";
+   private static final String ATTRIBUTE_PREFIX = "@";
+   private static final String TEXT = "__value__";
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final OutputStream stream;
+   private final XMLStreamWriter writer;
+   private long count;
+
+   /**
+    * Start a notification.
+    *
+    * @param channel - destination, closed with the writer
+    * @param header  - members written before the items, may be null
+    * @throws IOException when the header can not be written
+    */
+   public CatalogueItemNotificationWriter(WritableByteChannel channel, JsonObject header) throws IOException {
+      this.stream = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+      try {
+         this.writer = XMLOutputFactory.newInstance().createXMLStreamWriter(stream, StandardCharsets.UTF_8.name());
+         writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+         writer.writeStartElement(PREFIX, NOTIFICATION, NAMESPACE);
+         writer.writeNamespace(PREFIX, NAMESPACE);
+         if (header != null) {
+            writeMembers(header);
+         }
+      } catch (XMLStreamException ex) {
+         stream.close();
+         throw new IOException("Failed to start catalogue item notification", ex);
+      }
+   }
+
+   /**
+    * Start a notification in a file, replacing it when it exists.
+    *
+    * @param file   - destination file
+    * @param header - members written before the items, may be null
+    * @return writer
+    * @throws IOException when the file can not be opened or the header can not be written
+    */
+   public static CatalogueItemNotificationWriter open(Path file, JsonObject header) throws IOException {
+      return new CatalogueItemNotificationWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE), header);
+   }
+
+   /**
+    * Write a transformed entity as a trade item of the notification.
+    *
+    * @param tradeItem - transformed entity: supports only JsonRecord
+    * @throws IOException when the item can not be written
+    */
+   public void write(IRecord tradeItem) throws IOException {
+      if (!(tradeItem instanceof JsonRecord)) {
+         throw new ConnectRuntimeException("RSC7820", "Record doesn't support for serialization");
+      }
+      try {
+         writer.writeStartElement(CATALOGUE_ITEM);
+         writeElement(TRADE_ITEM, ((JsonRecord) tradeItem).getJsonObject());
+         writer.writeEndElement();
+      } catch (XMLStreamException ex) {
+         throw new IOException("Failed to write trade item", ex);
+      }
+      count++;
+   }
+
+   /**
+    * Number of trade items written.
+    */
+   public long getCount() {
+      return count;
+   }
+
+   /**
+    * End the notification and close the destination.
+    *
+    * @throws IOException when the notification can not be written
+    */
+   @Override
+   public void close() throws IOException {
+      try {
+         writer.writeEndElement();
+         writer.writeEndDocument();
+         writer.close();
+      } catch (XMLStreamException ex) {
+         throw new IOException("Failed to end catalogue item notification", ex);
+      } finally {
+         stream.close();
+      }
+   }
+
+   private void writeMember(String name, JsonElement value) throws XMLStreamException {
+      if (value == null || value.isJsonNull()) {
+         return;
+      }
+      if (value.isJsonArray()) {
+         for (JsonElement entry : value.getAsJsonArray()) {
+            writeMember(name, entry);
+         }
+      } else if (value.isJsonObject()) {
+         writeElement(name, value.getAsJsonObject());
+      } else {
+         writer.writeStartElement(name);
+         writer.writeCharacters(value.getAsString());
+         writer.writeEndElement();
+      }
+   }
+
+   private void writeElement(String name, JsonObject element) throws XMLStreamException {
+      writer.writeStartElement(name);
+      // Attributes must be written before any content of the element.
+      for (Map.Entry<String, JsonElement> member : element.entrySet()) {
+         if (member.getKey().startsWith(ATTRIBUTE_PREFIX) && isValue(member.getValue())) {
+            writer.writeAttribute(member.getKey().substring(ATTRIBUTE_PREFIX.length()), member.getValue().getAsString());
+         }
+      }
+      JsonElement text = element.get(TEXT);
+      if (isValue(text)) {
+         writer.writeCharacters(text.getAsString());
+      }
+      writeMembers(element);
+      writer.writeEndElement();
+   }
+
+   private void writeMembers(JsonObject element) throws XMLStreamException {
+      for (Map.Entry<String, JsonElement> member : element.entrySet()) {
+         if (!member.getKey().startsWith(ATTRIBUTE_PREFIX) && !TEXT.equals(member.getKey())) {
+            writeMember(member.getKey(), member.getValue());
+         }
+      }
+   }
+
+   private static boolean isValue(JsonElement element) {
+      return element != null && element.isJsonPrimitive();
+   }
+}
@@ -0,0 +1,221 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.collections.CollectionUtils;
+
+import com.google.common.base.Strings;
+
+import com.riversand.rsconnect.common.config.FieldMapping;
+import com.riversand.rsconnect.common.transform.FieldMapMacro;
+
+/**
+ * Read-only, pre-resolved form of a {@link FieldMapping}. Everything the transformer used to derive from the
+ * mapping for each record (type flags, destination paths, nesting information) is resolved once here.
+ */
+final class CompiledFieldMapping {
+   static final String REFERENCE_TYPE_DATA = "referenceTypeData";
+   static final String DESTINATION_SEPARATOR = "#@#";
+   private static final List<String> nestedTypes = Arrays.asList("oneToTwoLevel", "oneToThreeLevel");
+   private static final String GROUP = ".group[";
+
+   private final FieldMapping fieldMapping;
+   private final int ordinal;
+   private final String source;
+   private final String destination;
+   private final String type;
+   private final boolean collection;
+   private final boolean localizable;
+   private final boolean uom;
+   private final boolean referenceData;
+   private final boolean multiLevel;
+   private final DestinationTemplate destinationTemplate;
+   private final DestinationTemplate[] destinationFields;
+   private final DestinationTemplate languageCodeTemplate;
+   private final DestinationTemplate localizedValueTemplate;
+   private final SourcePath sourcePath;
+   private final String parentAttributeName;
+   private final List<CompiledFieldMapping> children;
+   private final NestedGroupPlan groups;
+   private final String[] sourceAttributeNames;
+
+   private CompiledFieldMapping(FieldMapping fieldMapping, MappingCatalog catalog) {
+      this.fieldMapping = fieldMapping;
+      this.ordinal = catalog.add(fieldMapping);
+      this.source = fieldMapping.getSource();
+      this.destination = fieldMapping.getDestination();
+      this.type = fieldMapping.getType();
+      this.localizable = fieldMapping.isLocalizable();
+      this.collection = fieldMapping.isCollectionType() || this.localizable;
+      this.uom = fieldMapping.hasUOM();
+      this.referenceData = REFERENCE_TYPE_DATA.equalsIgnoreCase(this.type);
+      this.multiLevel = isNestedType(this.type);
+      if (multiLevel && Strings.isNullOrEmpty(destination)) {
+         // Nested mappings write to the destinations of their children. Any other mapping without destination is
+         // quarantined by MappingValidator.
+         this.destinationTemplate = null;
+         this.destinationFields = null;
+         this.languageCodeTemplate = null;
+         this.localizedValueTemplate = null;
+      } else {
+         boolean dualDestination = referenceData || (!localizable && uom);
+         this.destinationFields = dualDestination ? DestinationTemplate.compileFields(destination) : null;
+         this.destinationTemplate = dualDestination ? null : DestinationTemplate.compile(destination);
+         this.languageCodeTemplate = localizable && !dualDestination ? destinationTemplate.append(".@languageCode") : null;
+         this.localizedValueTemplate = localizable && !dualDestination ? destinationTemplate.append(".__value__") : null;
+      }
+
+      String attributeName = FieldMapMacro.isAttribute(source) ? FieldMapMacro.getAttribute(source) : null;
+      this.sourcePath = SourcePath.compile(attributeName);
+      int firstIndexOfParent = attributeName == null ? -1 : attributeName.indexOf(GROUP);
+      this.parentAttributeName = firstIndexOfParent == -1 ? null : attributeName.substring(0, firstIndexOfParent);
+
+      if (multiLevel && CollectionUtils.isNotEmpty(fieldMapping.getChildFieldMappings())) {
+         List<CompiledFieldMapping> compiledChildren = new ArrayList<>(fieldMapping.getChildFieldMappings().size());
+         for (FieldMapping childFieldMapping : fieldMapping.getChildFieldMappings()) {
+            compiledChildren.add(new CompiledFieldMapping(childFieldMapping, catalog));
+         }
+         this.children = Collections.unmodifiableList(compiledChildren);
+      } else {
+         this.children = Collections.emptyList();
+      }
+      this.groups = NestedGroupPlan.compile(children);
+      if (multiLevel) {
+         this.sourceAttributeNames = groups.getRootNames().toArray(new String[0]);
+      } else {
+         this.sourceAttributeNames = sourcePath == null ? null : new String[]{sourcePath.getRootName()};
+      }
+   }
+
+   /**
+    * Compile a mapping and its nested child mappings.
+    *
+    * @param fieldMapping - mapping as configured in the transform profile
+    * @param catalog      - assigns the ordinals of the mapping and its children
+    * @return compiled mapping
+    */
+   static CompiledFieldMapping compile(FieldMapping fieldMapping, MappingCatalog catalog) {
+      return new CompiledFieldMapping(fieldMapping, catalog);
+   }
+
+   /**
+    * Check whether mappings of the given type are nested mappings, applied through their child mappings.
+    */
+   static boolean isNestedType(String type) {
+      return nestedTypes.contains(type);
+   }
+
+   /**
+    * The configured mapping. It is shared between records and must not be modified.
+    */
+   FieldMapping getFieldMapping() {
+      return fieldMapping;
+   }
+
+   /**
+    * Position of the mapping in the {@link MappingCatalog} of the transformer.
+    */
+   int getOrdinal() {
+      return ordinal;
+   }
+
+   String getSource() {
+      return source;
+   }
+
+   String getDestination() {
+      return destination;
+   }
+
+   String getType() {
+      return type;
+   }
+
+   /**
+    * True for collection and localizable mappings, both of which emit one value per source value.
+    */
+   boolean isCollection() {
+      return collection;
+   }
+
+   boolean isLocalizable() {
+      return localizable;
+   }
+
+   boolean hasUOM() {
+      return uom;
+   }
+
+   boolean isReferenceData() {
+      return referenceData;
+   }
+
+   boolean isMultiLevel() {
+      return multiLevel;
+   }
+
+   /**
+    * Destination of single field mappings, null for UOM and reference data mappings.
+    */
+   DestinationTemplate getDestinationTemplate() {
+      return destinationTemplate;
+   }
+
+   /**
+    * Destination of UOM and reference data mappings: the path without macro, split on the
+    * {@value #DESTINATION_SEPARATOR} separator into the code/UOM field and the value field.
+    */
+   DestinationTemplate[] getDestinationFields() {
+      return destinationFields;
+   }
+
+   /**
+    * Destination of the language code of localizable mappings.
+    */
+   DestinationTemplate getLanguageCodeTemplate() {
+      return languageCodeTemplate;
+   }
+
+   /**
+    * Destination of the value of localizable mappings.
+    */
+   DestinationTemplate getLocalizedValueTemplate() {
+      return localizedValueTemplate;
+   }
+
+   /**
+    * Attribute path of {@code @attr(...)} sources, null for any other source.
+    */
+   SourcePath getSourcePath() {
+      return sourcePath;
+   }
+
+   /**
+    * Name of the top level attribute of a nested (group) source, null for flat sources.
+    */
+   String getParentAttributeName() {
+      return parentAttributeName;
+   }
+
+   List<CompiledFieldMapping> getChildren() {
+      return children;
+   }
+
+   /**
+    * Child mappings arranged by group level, empty unless the mapping is nested.
+    */
+   NestedGroupPlan getGroups() {
+      return groups;
+   }
+
+   /**
+    * Top level attributes the output of the mapping depends on, null when the source is not read from attributes
+    * only.
+    */
+   String[] getSourceAttributeNames() {
+      return sourceAttributeNames;
+   }
+}
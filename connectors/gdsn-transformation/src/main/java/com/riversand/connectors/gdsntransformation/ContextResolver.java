@@ -0,0 +1,130 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.base.Strings;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import com.riversand.connectors.extension.helpers.TransformerHelper;
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+import com.riversand.rsconnect.interfaces.models.ContextMapping;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Resolves the contexts of a record once, for both attribute and relationship transformation.
+ * <p>
+ * The {@link ContextMapping}s of a record depend only on its context definitions, which repeat across the items of a
+ * catalog. {@link ContextMapping} is mutable and not thread safe, so it is built and initialized per record; only the
+ * context definitions are cached, by context shape, so the mappings are built from a small copy of them rather than
+ * from the whole record.
+ */
+final class ContextResolver {
+   private static final int MAX_CACHED_SHAPES = 1024;
+   private static final String CONTEXT = "context";
+
+   private final String collectFormat;
+   private final String publishFormat;
+   private final String contextDelimiter;
+   private final Map<List<JsonElement>, JsonObject> definitionsByShape = new ConcurrentHashMap<>();
+
+   ContextResolver(String collectFormat, String publishFormat, String contextDelimiter) {
+      this.collectFormat = collectFormat;
+      this.publishFormat = publishFormat;
+      this.contextDelimiter = contextDelimiter;
+   }
+
+   /**
+    * Resolve the entity and every context defined for the record.
+    *
+    * @param sourceIndex - index over the record to transform
+    * @return the entity itself followed by its contexts, in source order
+    */
+   List<ResolvedContext> resolve(SourceIndex sourceIndex) {
+      JsonRecord inboundRecord = sourceIndex.getRecord();
+      List<ResolvedContext> resolvedContexts = new ArrayList<>();
+      resolvedContexts.add(new ResolvedContext(null, sourceIndex.getAttributes(null), sourceIndex.getRelationships(null)));
+
+      for (ContextMapping contextMapping : getContextMappings(inboundRecord.getJsonObject())) {
+         String contextKey = contextMapping.getKeyFromSourceRecord(inboundRecord);
+         // The context mapping may not be defined for this record.
+         // Perhaps this record defines data for some other context.
+         if (Strings.isNullOrEmpty(contextKey)) {
+            continue;
+         }
+         resolvedContexts.add(new ResolvedContext(contextKey, sourceIndex.getAttributes(contextKey), sourceIndex.getRelationships(contextKey)));
+      }
+      return resolvedContexts;
+   }
+
+   private List<ContextMapping> getContextMappings(JsonObject inboundObject) {
+      List<JsonElement> shape = getShape(inboundObject);
+      if (shape.isEmpty()) {
+         return Collections.emptyList();
+      }
+      JsonObject definitions = definitionsByShape.get(shape);
+      if (definitions == null) {
+         // Copied, as the definitions read from the record change with it.
+         List<JsonElement> key = new ArrayList<>(shape.size());
+         for (JsonElement definition : shape) {
+            key.add(definition.deepCopy());
+         }
+         definitions = getDefinitions(key);
+         if (definitionsByShape.size() < MAX_CACHED_SHAPES) {
+            definitionsByShape.putIfAbsent(key, definitions);
+         }
+      }
+      List<ContextMapping> contextMappings = TransformerHelper.getContextMappings(definitions, collectFormat, publishFormat, contextDelimiter);
+      if (contextMappings == null) {
+         return Collections.emptyList();
+      }
+      for (ContextMapping contextMapping : contextMappings) {
+         contextMapping.Initialize(contextDelimiter, collectFormat, publishFormat);
+         contextMapping.setISJson(true);
+      }
+      return contextMappings;
+   }
+
+   /**
+    * Get the shape of the record contexts: the context definitions of {@code data.contexts}, in order. Compared by
+    * value, without serializing them.
+    */
+   private static List<JsonElement> getShape(JsonObject inboundObject) {
+      JsonElement data = inboundObject.get(Constants.DATA);
+      JsonElement contexts = data != null && data.isJsonObject() ? data.getAsJsonObject().get(Constants.CONTEXTS) : null;
+      if (contexts == null || !contexts.isJsonArray() || contexts.getAsJsonArray().size() == 0) {
+         return Collections.emptyList();
+      }
+      List<JsonElement> shape = new ArrayList<>(contexts.getAsJsonArray().size());
+      for (JsonElement context : contexts.getAsJsonArray()) {
+         JsonElement definition = context.isJsonObject() ? context.getAsJsonObject().get(CONTEXT) : null;
+         shape.add(definition == null ? JsonNull.INSTANCE : definition);
+      }
+      return shape;
+   }
+
+   /**
+    * Get a record holding only the given context definitions, never modified once built.
+    */
+   private static JsonObject getDefinitions(List<JsonElement> shape) {
+      JsonArray contexts = new JsonArray();
+      for (JsonElement definition : shape) {
+         JsonObject context = new JsonObject();
+         if (!definition.isJsonNull()) {
+            context.add(CONTEXT, definition);
+         }
+         contexts.add(context);
+      }
+      JsonObject data = new JsonObject();
+      data.add(Constants.CONTEXTS, contexts);
+      JsonObject definitions = new JsonObject();
+      definitions.add(Constants.DATA, data);
+      return definitions;
+   }
+}
@@ -0,0 +1,232 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.base.Strings;
+
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
+
+/**
+ * Destination path parsed once into literal parts and {@code %d} index slots. Rendering appends the parts and the
+ * indices to a caller owned builder, so writing a value needs neither {@code String.format} nor boxed indices.
+ * <p>
+ * A plain dotted path is also split into its segments, each a name with an optional fixed or slot index, which lets
+ * {@link OutputDocument} write the value without rendering and parsing the path.
+ */
+final class DestinationTemplate {
+   private static final String INDEX_PLACEHOLDER = "%d";
+   private static final int NO_INDEX = -1;
+
+   private final String field;
+   private final String[] literals;
+   // Segment names and indices, null when the path is not a plain dotted path. Slot indices are stored as -2 - slot.
+   private final String[] segmentNames;
+   private final int[] segmentIndices;
+
+   private DestinationTemplate(String field, String[] literals) {
+      this.field = field;
+      this.literals = literals;
+      String[] parts = field.split("\\.", -1);
+      int[] indices = new int[parts.length];
+      this.segmentNames = getSegmentNames(parts, indices, literals.length - 1);
+      this.segmentIndices = segmentNames == null ? null : indices;
+   }
+
+   /**
+    * Split the parts of a dotted path into names and indices.
+    *
+    * @return segment names, null when a part is not a name with an optional index or a placeholder is not an index
+    */
+   private static String[] getSegmentNames(String[] parts, int[] indices, int slotCount) {
+      String[] names = new String[parts.length];
+      int slots = 0;
+      for (int i = 0; i < parts.length; i++) {
+         String part = parts[i];
+         int bracket = part.indexOf('[');
+         if (bracket == -1) {
+            names[i] = part;
+            indices[i] = NO_INDEX;
+         } else if (part.endsWith("]")) {
+            names[i] = part.substring(0, bracket);
+            String index = part.substring(bracket + 1, part.length() - 1);
+            if (INDEX_PLACEHOLDER.equals(index)) {
+               indices[i] = -2 - slots++;
+            } else if (isDigits(index)) {
+               indices[i] = Integer.parseInt(index);
+            } else {
+               return null;
+            }
+         } else {
+            return null;
+         }
+         if (names[i].isEmpty() || names[i].contains("]") || names[i].contains(INDEX_PLACEHOLDER)) {
+            return null;
+         }
+      }
+      return slots == slotCount ? names : null;
+   }
+
+   private static boolean isDigits(String index) {
+      if (index.isEmpty() || index.length() > 9) {
+         return false;
+      }
+      for (int i = 0; i < index.length(); i++) {
+         if (!Character.isDigit(index.charAt(i))) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Compile a destination as configured on the mapping. {@code @attr(...)} resolves to the attribute name,
+    * {@code @path(...)} and {@code @relPath(...)} to their indexed path, and a plain path is indexed only when it
+    * contains a {@code [%d]} placeholder.
+    *
+    * @param field - destination field
+    * @return compiled template
+    */
+   static DestinationTemplate compile(String field) {
+      if (Strings.isNullOrEmpty(field)) {
+         throw new ConnectIllegalArgumentException("RSC7820", "field cannot be null");
+      }
+      if (GDSNFieldMapMacro.isAttribute(field)) {
+         return literal(GDSNFieldMapMacro.getAttribute(field));
+      } else if (GDSNFieldMapMacro.isPath(field)) {
+         return indexed(GDSNFieldMapMacro.getPath(field));
+      } else if (GDSNFieldMapMacro.isRelPath(field)) {
+         return indexed(GDSNFieldMapMacro.getRelPath(field));
+      }
+      return compilePath(field);
+   }
+
+   /**
+    * Compile a destination that may hold two fields separated by {@code #@#}, as used by UOM and reference data
+    * mappings. The path macro is removed before splitting and each field is compiled as a plain path.
+    *
+    * @param field - destination field
+    * @return one template per destination field
+    */
+   static DestinationTemplate[] compileFields(String field) {
+      if (Strings.isNullOrEmpty(field)) {
+         throw new ConnectIllegalArgumentException("RSC7820", "field cannot be null");
+      }
+      String path = field;
+      if (GDSNFieldMapMacro.isPath(field)) {
+         path = GDSNFieldMapMacro.getPath(field);
+      } else if (GDSNFieldMapMacro.isRelPath(field)) {
+         path = GDSNFieldMapMacro.getRelPath(field);
+      }
+      String[] fields = path.split(CompiledFieldMapping.DESTINATION_SEPARATOR);
+      DestinationTemplate[] templates = new DestinationTemplate[fields.length];
+      for (int i = 0; i < fields.length; i++) {
+         templates[i] = compilePath(fields[i]);
+      }
+      return templates;
+   }
+
+   private static DestinationTemplate compilePath(String path) {
+      return path.contains("[" + INDEX_PLACEHOLDER + "]") ? indexed(path) : literal(path);
+   }
+
+   private static DestinationTemplate literal(String path) {
+      return new DestinationTemplate(path, new String[]{path});
+   }
+
+   private static DestinationTemplate indexed(String path) {
+      List<String> literals = new ArrayList<>();
+      int start = 0;
+      int slot = path.indexOf(INDEX_PLACEHOLDER);
+      while (slot != -1) {
+         literals.add(path.substring(start, slot));
+         start = slot + INDEX_PLACEHOLDER.length();
+         slot = path.indexOf(INDEX_PLACEHOLDER, start);
+      }
+      literals.add(path.substring(start));
+      return new DestinationTemplate(path, literals.toArray(new String[literals.size()]));
+   }
+
+   /**
+    * Create a template for a field nested under this one, e.g. {@code .@languageCode}.
+    *
+    * @param suffix - path appended to the template
+    * @return compiled template
+    */
+   DestinationTemplate append(String suffix) {
+      String[] appended = literals.clone();
+      appended[appended.length - 1] = appended[appended.length - 1] + suffix;
+      return new DestinationTemplate(field + suffix, appended);
+   }
+
+   /**
+    * Number of index placeholders in the template.
+    */
+   int getSlotCount() {
+      return literals.length - 1;
+   }
+
+   /**
+    * Render the path for the given indices. Indices beyond the number of placeholders are ignored.
+    *
+    * @param builder - reusable builder, cleared before rendering
+    * @param indices - index values, in placeholder order
+    * @param count   - number of valid entries in indices
+    * @return rendered path
+    */
+   String render(StringBuilder builder, int[] indices, int count) {
+      int slots = literals.length - 1;
+      if (slots == 0) {
+         return literals[0];
+      }
+      checkIndices(count);
+      builder.setLength(0);
+      for (int i = 0; i < slots; i++) {
+         builder.append(literals[i]).append(indices[i]);
+      }
+      return builder.append(literals[slots]).toString();
+   }
+
+   /**
+    * Check that there is an index for every placeholder.
+    *
+    * @param count - number of indices
+    */
+   void checkIndices(int count) {
+      if (count < literals.length - 1) {
+         throw new ConnectIllegalArgumentException("RSC7820", "Missing index for destination " + field);
+      }
+   }
+
+   /**
+    * Check whether the path is split into segments; otherwise it can only be written rendered.
+    */
+   boolean isSegmented() {
+      return segmentNames != null;
+   }
+
+   int getSegmentCount() {
+      return segmentNames.length;
+   }
+
+   String getSegmentName(int segment) {
+      return segmentNames[segment];
+   }
+
+   /**
+    * Get the array index of a segment for the given indices.
+    *
+    * @param segment - segment of the path
+    * @param indices - index values, in placeholder order
+    * @return array index, negative when the segment is not an array entry
+    */
+   int getSegmentIndex(int segment, int[] indices) {
+      int index = segmentIndices[segment];
+      return index < NO_INDEX ? indices[-2 - index] : index;
+   }
+
+   @Override
+   public String toString() {
+      return field;
+   }
+}
@@ -7,17 +7,21 @@
 package com.riversand.connectors.gdsntransformation;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.CollectionUtils;
 
 import com.google.common.base.Strings;
-import com.google.gson.JsonObject;
+import com.google.common.collect.MapMaker;
 
-import com.riversand.connectors.extension.helpers.TransformerHelper;
 import com.riversand.rsconnect.common.config.FieldMapping;
 import com.riversand.rsconnect.common.config.RSConnectContext;
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
 import com.riversand.rsconnect.common.helpers.ConnectRuntimeException;
 import com.riversand.rsconnect.common.transform.FieldMetadata;
 import com.riversand.rsconnect.common.transform.IFieldMapGenerator;
@@ -25,8 +29,15 @@ import com.riversand.rsconnect.interfaces.clients.IServiceClient;
 import com.riversand.rsconnect.interfaces.models.RdpStatusDetail;
 
 public class FieldMapGenerator implements IFieldMapGenerator {
+   static final String CACHE_TTL_SETTING = "mappingConfigCacheTtlSeconds";
+   // Relationship mappings added to every profile by the last generation, by identity of the profile list.
+   private static final Map<List<FieldMapping>, List<FieldMapping>> GENERATED_RELATIONSHIP_MAPPINGS = new MapMaker().weakKeys().makeMap();
+
    private RSConnectContext connectContext;
    private String configId;
+   private long cacheTtlMillis;
+   private MappingConfigCache mappingConfigCache;
+   private MappingValidator.Report validationReport;
 
    /**
     * Constructor.
@@ -40,24 +51,90 @@ public class FieldMapGenerator implements IFieldMapGenerator {
                             List<FieldMapping> overrides,
                             RSConnectContext connectContext,
                             IServiceClient iServiceClient) {
+      this(connectContext, MappingConfigCache.getInstance());
+   }
+
+   FieldMapGenerator(RSConnectContext connectContext, MappingConfigCache mappingConfigCache) {
       this.connectContext = connectContext;
+      this.mappingConfigCache = mappingConfigCache;
       this.configId = connectContext.getConnectProfile().getTransform().getSettings().getAdditionalSetting("mappingConfig");
+      this.cacheTtlMillis = getCacheTtlMillis(connectContext.getConnectProfile().getTransform().getSettings().getAdditionalSetting(CACHE_TTL_SETTING));
    }
 
+   private static long getCacheTtlMillis(String ttlSeconds) {
+      if (Strings.isNullOrEmpty(ttlSeconds)) {
+         return MappingConfigCache.DEFAULT_TTL_MILLIS;
+      }
+      try {
+         long value = Long.parseLong(ttlSeconds.trim());
+         if (value >= 0) {
+            return TimeUnit.SECONDS.toMillis(value);
+         }
+      } catch (NumberFormatException ex) {
+         // Reported below
+      }
+      throw new ConnectIllegalArgumentException("RSC7820", "Invalid " + CACHE_TTL_SETTING + ": " + ttlSeconds);
+   }
+
+   /**
+    * Generate the mappings from the mapping config of the config service. The mappings are validated once per config
+    * version, when it is loaded: malformed mappings are left out and logged by the first generation using the version,
+    * or rejected in strict mode, see {@link MappingValidator}.
+    */
    @Override
    public List<FieldMapping> generate(RdpStatusDetail rdpStatusDetail) throws Exception {
       if (Strings.isNullOrEmpty(this.configId)) {
          throw new ConnectRuntimeException("RSC7820", "Mappings config id is missing.");
       }
-      JsonObject dataObject = TransformerHelper.getConfigDataObject(connectContext.getExecutionContext().getTenantId(), this.configId,  "mappings", null);
-      List<FieldMapping> fieldMappings = new ArrayList<>();
-      fieldMappings.addAll(TransformerHelper.getFieldMappings(dataObject, "jsonData.mappings"));
-      List<FieldMapping> relationshipMap = TransformerHelper.getFieldMappings(dataObject, "jsonData.relationshipMappings");
-      if(CollectionUtils.isNotEmpty(relationshipMap)) {
-         connectContext.getConnectProfile().getTransform().getRelationships().getFieldMap().addAll(relationshipMap);
+      MappingConfigCache.MappingConfig mappingConfig = mappingConfigCache
+            .get(connectContext.getExecutionContext().getTenantId(), this.configId, cacheTtlMillis);
+      this.validationReport = MappingValidator.check(connectContext.getConnectProfile().getTransform(), mappingConfig.getReport(),
+            mappingConfig::markReported);
+      mergeRelationshipMappings(connectContext.getConnectProfile().getTransform().getRelationships().getFieldMap(), mappingConfig);
+      return copy(mappingConfig.getFieldMappings());
+   }
+
+   /**
+    * Report of the validation of the last generated mappings, null before the first generation.
+    */
+   MappingValidator.Report getValidationReport() {
+      return validationReport;
+   }
+
+   /**
+    * Add the relationship mappings of the config to the profile. The mappings added by the last generation for the
+    * profile are removed first, whatever config version they came from, so a profile only ever holds its own
+    * mappings and the ones of the latest generation.
+    */
+   static void mergeRelationshipMappings(List<FieldMapping> relationshipFieldMap, MappingConfigCache.MappingConfig mappingConfig) {
+      synchronized (relationshipFieldMap) {
+         List<FieldMapping> generated = GENERATED_RELATIONSHIP_MAPPINGS.get(relationshipFieldMap);
+         if (generated != null) {
+            Set<FieldMapping> previous = Collections.newSetFromMap(new IdentityHashMap<>());
+            previous.addAll(generated);
+            relationshipFieldMap.removeIf(previous::contains);
+         }
+         if (CollectionUtils.isEmpty(mappingConfig.getRelationshipMappings())) {
+            GENERATED_RELATIONSHIP_MAPPINGS.remove(relationshipFieldMap);
+            return;
+         }
+         List<FieldMapping> copies = copy(mappingConfig.getRelationshipMappings());
+         relationshipFieldMap.addAll(copies);
+         GENERATED_RELATIONSHIP_MAPPINGS.put(relationshipFieldMap, copies);
       }
+   }
 
-      return fieldMappings;
+   /**
+    * Copy the mappings of a cached config, so a job changing the mappings it is handed does not change them for the
+    * other jobs, profiles and tenants. The copies are valid like the mappings they are copied from.
+    */
+   private static List<FieldMapping> copy(List<FieldMapping> mappings) {
+      List<FieldMapping> copies = new ArrayList<>(mappings.size());
+      for (FieldMapping mapping : mappings) {
+         copies.add(new FieldMapping(mapping));
+      }
+      MappingValidator.markValidated(copies);
+      return copies;
    }
 
    @Override
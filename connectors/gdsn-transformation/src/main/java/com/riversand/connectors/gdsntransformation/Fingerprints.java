@@ -0,0 +1,106 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * 64 bit fingerprints of source JSON, used to detect that the source of a mapping did not change since the entity
+ * was last transformed, and 128 bit content hashes of whole entities. The JSON tree is hashed as it is walked,
+ * without serializing it.
+ */
+final class Fingerprints {
+   private static final int ABSENT = 0;
+   private static final int NULL = 1;
+   private static final int OBJECT = 2;
+   private static final int ARRAY = 3;
+   private static final int STRING = 4;
+   private static final int NUMBER = 5;
+   private static final int BOOLEAN = 6;
+
+   private Fingerprints() {
+   }
+
+   /**
+    * Fingerprint the given members of an object.
+    *
+    * @param object - object holding the members, may be null
+    * @param names  - member names
+    * @return fingerprint
+    */
+   static long of(JsonElement object, String[] names) {
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      for (String name : names) {
+         hasher.putUnencodedChars(name);
+         JsonElement member = object != null && object.isJsonObject() ? object.getAsJsonObject().get(name) : null;
+         put(hasher, member, false);
+      }
+      return hasher.hash().asLong();
+   }
+
+   /**
+    * Fingerprint a JSON element.
+    *
+    * @param element - element, may be null
+    * @return fingerprint
+    */
+   static long of(JsonElement element) {
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      put(hasher, element, false);
+      return hasher.hash().asLong();
+   }
+
+   /**
+    * Hash a JSON element regardless of the order of the members of its objects.
+    *
+    * @param seed    - hashed before the element
+    * @param element - element, may be null
+    * @return content hash
+    */
+   static HashCode ofContent(String seed, JsonElement element) {
+      Hasher hasher = Hashing.murmur3_128().newHasher();
+      hasher.putInt(seed.length()).putUnencodedChars(seed);
+      put(hasher, element, true);
+      return hasher.hash();
+   }
+
+   private static void put(Hasher hasher, JsonElement element, boolean sorted) {
+      if (element == null) {
+         hasher.putInt(ABSENT);
+      } else if (element.isJsonObject()) {
+         JsonObject object = element.getAsJsonObject();
+         hasher.putInt(OBJECT).putInt(object.size());
+         if (sorted) {
+            String[] names = object.keySet().toArray(new String[object.size()]);
+            Arrays.sort(names);
+            for (String name : names) {
+               hasher.putInt(name.length()).putUnencodedChars(name);
+               put(hasher, object.get(name), true);
+            }
+         } else {
+            for (Map.Entry<String, JsonElement> member : object.entrySet()) {
+               hasher.putUnencodedChars(member.getKey());
+               put(hasher, member.getValue(), false);
+            }
+         }
+      } else if (element.isJsonArray()) {
+         hasher.putInt(ARRAY).putInt(element.getAsJsonArray().size());
+         for (JsonElement item : element.getAsJsonArray()) {
+            put(hasher, item, sorted);
+         }
+      } else if (element.isJsonPrimitive()) {
+         JsonPrimitive primitive = element.getAsJsonPrimitive();
+         hasher.putInt(primitive.isString() ? STRING : primitive.isNumber() ? NUMBER : BOOLEAN);
+         String value = primitive.getAsString();
+         hasher.putInt(value.length()).putUnencodedChars(value);
+      } else {
+         hasher.putInt(NULL);
+      }
+   }
+}
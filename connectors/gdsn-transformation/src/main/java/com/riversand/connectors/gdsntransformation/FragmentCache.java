@@ -0,0 +1,103 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Strings;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.interfaces.models.IRecord;
+
+/**
+ * Bounded least recently used cache of the output fragments of transformed entities, keyed by entity type and id.
+ * It is local to a transformer: the fragments are only valid for the mappings they were computed with.
+ */
+final class FragmentCache {
+   private static final String ID = "id";
+
+   private final Map<String, Snapshot> snapshots;
+
+   /**
+    * @param maxEntities - number of entities kept, the least recently transformed ones are evicted first
+    */
+   FragmentCache(int maxEntities) {
+      this.snapshots = new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > maxEntities;
+         }
+      };
+   }
+
+   /**
+    * Start the incremental transformation of a record.
+    *
+    * @param record      - inbound record
+    * @param entityType  - entity type of the record
+    * @param contexts    - the entity and its contexts defined for the record
+    * @param fieldMap    - mappings of the entity type
+    * @return incremental transformation, null when the record has no id and can not be cached
+    */
+   IncrementalTransform start(IRecord record, String entityType, List<ResolvedContext> contexts, List<CompiledFieldMapping> fieldMap) {
+      String id = record.getValue(ID);
+      if (Strings.isNullOrEmpty(id)) {
+         return null;
+      }
+      String key = entityType + "/" + id;
+      return new IncrementalTransform(this, key, get(key), contexts, fieldMap);
+   }
+
+   synchronized Snapshot get(String key) {
+      return snapshots.get(key);
+   }
+
+   synchronized void put(String key, Snapshot snapshot) {
+      snapshots.put(key, snapshot);
+   }
+
+   synchronized void remove(String key) {
+      snapshots.remove(key);
+   }
+
+   synchronized int size() {
+      return snapshots.size();
+   }
+
+   /**
+    * Output of the last transformation of an entity: the fragments of every context, and the whole document.
+    */
+   static final class Snapshot {
+      private final String[] contextKeys;
+      // Indexed by context, then by the position of the mapping in the field map.
+      private final OutputFragment[][] mappings;
+      private final OutputFragment[] relationships;
+      private final JsonObject document;
+
+      Snapshot(String[] contextKeys, OutputFragment[][] mappings, OutputFragment[] relationships, JsonObject document) {
+         this.contextKeys = contextKeys;
+         this.mappings = mappings;
+         this.relationships = relationships;
+         this.document = document;
+      }
+
+      String[] getContextKeys() {
+         return contextKeys;
+      }
+
+      OutputFragment[][] getMappings() {
+         return mappings;
+      }
+
+      OutputFragment[] getRelationships() {
+         return relationships;
+      }
+
+      /**
+       * The transformed document. It is shared by every caller of the cache and must not be modified.
+       */
+      JsonObject getDocument() {
+         return document;
+      }
+   }
+}
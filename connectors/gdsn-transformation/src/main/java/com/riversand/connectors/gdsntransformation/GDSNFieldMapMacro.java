@@ -40,4 +40,24 @@ public class GDSNFieldMapMacro extends FieldMapMacro {
          return relToPath;
       }
    }
+
+   /**
+    * Check the parentheses of a field. A macro such as {@code @path(...)} or {@code @relPath(...)} must be closed by
+    * the last character of the field, and parentheses within it must be balanced.
+    */
+   public static boolean isBalanced(String field) {
+      if (Strings.isNullOrEmpty(field)) {
+         return true;
+      }
+      int depth = 0;
+      for (int i = 0; i < field.length(); i++) {
+         char c = field.charAt(i);
+         if (c == '(') {
+            depth++;
+         } else if (c == ')' && --depth < 0) {
+            return false;
+         }
+      }
+      return depth == 0 && (!field.startsWith("@") || field.indexOf('(') == -1 || field.endsWith(")"));
+   }
 }
@@ -9,49 +9,71 @@
 */
 package com.riversand.connectors.gdsntransformation;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Arrays;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
-import java.util.StringJoiner;
-import java.util.regex.Pattern;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.collections.CollectionUtils;
 
 import com.google.common.base.Strings;
+import com.google.common.hash.HashCode;
+import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import com.riversand.connectors.extension.helpers.TransformerHelper;
-import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManager;
-import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManagerLogger;
 import com.riversand.rsconnect.common.config.AppConfig;
 import com.riversand.rsconnect.common.config.FieldMapping;
 import com.riversand.rsconnect.common.config.RSConnectContext;
 import com.riversand.rsconnect.common.config.TransformConfig;
 import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
 import com.riversand.rsconnect.common.helpers.ConnectRuntimeException;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
 import com.riversand.rsconnect.common.rsconnect.driver.Constants;
-import com.riversand.rsconnect.common.transform.FieldMapMacro;
 import com.riversand.rsconnect.interfaces.clients.IServiceClient;
-import com.riversand.rsconnect.interfaces.models.ContextMapping;
 import com.riversand.rsconnect.interfaces.models.IRecord;
 import com.riversand.rsconnect.interfaces.models.JsonRecord;
 import com.riversand.rsconnect.interfaces.models.RdpStatusDetail;
 import com.riversand.rsconnect.interfaces.transformer.IRecordTransformer;
 
-import static java.util.stream.Collectors.toList;
-
 public class GDSNTransformer implements IRecordTransformer {
 
-   private static final List<String> nestedTyes = Arrays.asList("oneToTwoLevel", "oneToThreeLevel");
-   private ProfilerManagerLogger pmLogger = ProfilerManager.getLogger(GDSNTransformer.class);
-   private RSConnectContext connectContext;
-   private TransformConfig config;
-   private String contextDelimiter;
+   static final String PARALLELISM_SETTING = "transformParallelism";
+   static final String METRICS_REGISTRY_SETTING = "metricsRegistry";
+   static final String INCREMENTAL_CACHE_SETTING = "incrementalCacheSize";
+   static final String OUTPUT_CACHE_SETTING = "outputCacheSize";
+   static final String OUTPUT_CACHE_WEIGHT_SETTING = "outputCacheWeight";
+   static final String ERROR_LOG_INTERVAL_SETTING = "errorLogInterval";
+   private static final String JMX_REGISTRY = "jmx";
+   private static final int[] NO_INDICES = new int[0];
+   private static final String VALUE_SUFFIX = "[0]." + Constants.Mappings.VALUE;
+
+   // Everything below is resolved in the constructor and only read afterwards, so a single transformer can be
+   // shared by all threads of a batch. The profile objects themselves are not read once the transformer is built.
+   private final RSConnectContext connectContext;
+   private final TransformConfig config;
+   private final String contextDelimiter;
+   private final String collectionSeparator;
+   private final MappingPlan mappingPlan;
+   private final RelationshipPlan relationshipPlan;
+   private final ContextResolver contextResolver;
+   private final SourceProjection sourceProjection;
+   private final TransformMetrics metrics;
+   private final MappingErrorLog errorLog;
+   private final TransformMetricsRegistry metricsRegistry;
+   private final FragmentCache fragmentCache;
+   private final OutputCache outputCache;
+   private final ForkJoinPool pool;
+   private final boolean ownsPool;
 
    public GDSNTransformer(RSConnectContext connectContext, IServiceClient serviceClient) {
       this(connectContext);
@@ -63,19 +85,124 @@ public class GDSNTransformer implements IRecordTransformer {
     * @param connectContext - Contains execution context and profile configuration
     */
    public GDSNTransformer(RSConnectContext connectContext) {
+      this(connectContext, (ForkJoinPool) null);
+   }
+
+   /**
+    * Class to transform the data from source format to destination format using with fieldMappings
+    *
+    * @param connectContext - Contains execution context and profile configuration
+    * @param pool           - pool used by {@link #transformAll}. When null a pool sized by the
+    *                       {@value #PARALLELISM_SETTING} transform setting is created, or the common pool is used
+    *                       when the setting is absent.
+    */
+   public GDSNTransformer(RSConnectContext connectContext, ForkJoinPool pool) {
       this.connectContext = connectContext;
       this.config = connectContext.getConnectProfile().getTransform();
-      if (CollectionUtils.isEmpty(this.config.getFieldMap()) && CollectionUtils.isEmpty(this.config.getRelationships().getFieldMap())) {
+      List<FieldMapping> fieldMap = this.config.getFieldMap();
+      List<FieldMapping> relationshipFieldMap = this.config.getRelationships().getFieldMap();
+      if (CollectionUtils.isEmpty(fieldMap) && CollectionUtils.isEmpty(relationshipFieldMap)) {
          throw new ConnectIllegalArgumentException("RSC7820", "fieldMaps are empty");
       }
+      // Malformed mappings are left out here, so the mappings applied to records need no checks. Mappings generated
+      // from a mapping config were validated when it was loaded and are not checked or reported again.
+      MappingValidator.Report report = MappingValidator.check(this.config, fieldMap, relationshipFieldMap);
+      fieldMap = report.getFieldMappings();
+      relationshipFieldMap = report.getRelationshipMappings();
+      MappingCatalog catalog = new MappingCatalog();
+      this.mappingPlan = MappingPlan.compile(fieldMap, catalog);
+      this.relationshipPlan = RelationshipPlan.compile(relationshipFieldMap, catalog);
+      this.metrics = new TransformMetrics(catalog);
+      int errorLogInterval = getPositiveSetting(this.config, ERROR_LOG_INTERVAL_SETTING);
+      this.errorLog = new MappingErrorLog(catalog, errorLogInterval > 0 ? errorLogInterval : MappingErrorLog.DEFAULT_INTERVAL);
+      this.collectionSeparator = this.config.getSettings().getCollectionSeparator();
       //Adding this condition for unit test handling
       if(!Strings.isNullOrEmpty(connectContext.getExecutionContext().getTenantId())) {
          this.contextDelimiter = AppConfig.getInstance().getContextDelimiter(connectContext.getExecutionContext().getTenantId());
+      } else {
+         this.contextDelimiter = null;
+      }
+      this.contextResolver = new ContextResolver(connectContext.getConnectProfile().getCollect().getFormat().getType(),
+            connectContext.getConnectProfile().getPublish().getFormat().getType(), contextDelimiter);
+      this.sourceProjection = SourceProjection.compile(this.mappingPlan.getAllMappings(), this.relationshipPlan);
+      if (pool != null) {
+         this.pool = pool;
+         this.ownsPool = false;
+      } else {
+         int parallelism = getPositiveSetting(this.config, PARALLELISM_SETTING);
+         this.pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+         this.ownsPool = parallelism > 0;
+      }
+      int incrementalCacheSize = getPositiveSetting(this.config, INCREMENTAL_CACHE_SETTING);
+      this.fragmentCache = incrementalCacheSize > 0 ? new FragmentCache(incrementalCacheSize) : null;
+      int outputCacheSize = getPositiveSetting(this.config, OUTPUT_CACHE_SETTING);
+      int outputCacheWeight = getPositiveSetting(this.config, OUTPUT_CACHE_WEIGHT_SETTING);
+      this.outputCache = outputCacheSize > 0 ? new OutputCache(getPlanVersion(fieldMap, relationshipFieldMap), outputCacheSize,
+            outputCacheWeight > 0 ? outputCacheWeight : Long.MAX_VALUE) : null;
+      this.metricsRegistry = getMetricsRegistry(this.config);
+      if (this.metricsRegistry != null) {
+         this.metricsRegistry.register(connectContext.getConnectProfile().getId(), this.metrics);
+      }
+   }
+
+   /**
+    * Get the version of the mapping plan: a hash of the mappings and of the profile settings they are applied with.
+    */
+   private String getPlanVersion(List<FieldMapping> fieldMap, List<FieldMapping> relationshipFieldMap) {
+      Gson gson = GsonBuilder.getGsonInstance();
+      JsonObject plan = new JsonObject();
+      plan.add("fieldMap", gson.toJsonTree(fieldMap));
+      plan.add("relationshipFieldMap", gson.toJsonTree(relationshipFieldMap));
+      plan.addProperty("collectFormat", connectContext.getConnectProfile().getCollect().getFormat().getType());
+      plan.addProperty("publishFormat", connectContext.getConnectProfile().getPublish().getFormat().getType());
+      plan.addProperty("contextDelimiter", contextDelimiter);
+      plan.addProperty("collectionSeparator", collectionSeparator);
+      return Fingerprints.ofContent("", plan).toString();
+   }
+
+   private static TransformMetricsRegistry getMetricsRegistry(TransformConfig config) {
+      String registry = config.getSettings().getAdditionalSetting(METRICS_REGISTRY_SETTING);
+      if (Strings.isNullOrEmpty(registry)) {
+         return null;
+      }
+      if (JMX_REGISTRY.equalsIgnoreCase(registry.trim())) {
+         return new JmxTransformMetricsRegistry();
+      }
+      try {
+         return Class.forName(registry.trim()).asSubclass(TransformMetricsRegistry.class).newInstance();
+      } catch (ReflectiveOperationException | ClassCastException ex) {
+         throw new ConnectIllegalArgumentException("RSC7820", "Invalid " + METRICS_REGISTRY_SETTING + ": " + registry);
+      }
+   }
+
+   /**
+    * Get a positive number transform setting, 0 when absent.
+    */
+   private static int getPositiveSetting(TransformConfig config, String name) {
+      String setting = config.getSettings().getAdditionalSetting(name);
+      if (Strings.isNullOrEmpty(setting)) {
+         return 0;
       }
+      try {
+         int value = Integer.parseInt(setting.trim());
+         if (value > 0) {
+            return value;
+         }
+      } catch (NumberFormatException ex) {
+         // Reported below
+      }
+      throw new ConnectIllegalArgumentException("RSC7820", "Invalid " + name + ": " + setting);
    }
 
    /**
-    * Transform record data into destination format.
+    * Transform record data into destination format. When the {@value #INCREMENTAL_CACHE_SETTING} transform setting
+    * is set, the output of the mappings whose source attributes did not change since the entity was last
+    * transformed is reused. When the {@value #OUTPUT_CACHE_SETTING} transform setting is set, an entity with the
+    * same content as one transformed before is served from the output cache, bounded in total weight by the
+    * {@value #OUTPUT_CACHE_WEIGHT_SETTING} transform setting.
+    * <p>
+    * The status detail holds no mapping errors: mappings that fail are only counted and logged. Use
+    * {@link #transform(IRecord, RdpStatusDetail, TransformErrors)} to get them.
     *
     * @param record   input IRecord: Sample supports only JsonRecord
     * @param messages To Log messages when transform not happened with the field.
@@ -83,361 +210,508 @@ public class GDSNTransformer implements IRecordTransformer {
     */
    @Override
    public IRecord transform(IRecord record, RdpStatusDetail messages) {
+      return transform(record, messages, null);
+   }
+
+   /**
+    * Transform record data into destination format, as {@link #transform(IRecord, RdpStatusDetail)}. A mapping that
+    * fails is recorded in the given errors and the record goes on with the next mapping. Failures are also counted
+    * per mapping by the metrics, and logged: the first failure of a mapping, then one in every
+    * {@value #ERROR_LOG_INTERVAL_SETTING} transform setting failures, 1000 by default.
+    *
+    * @param record   input IRecord: Sample supports only JsonRecord
+    * @param messages To Log messages when transform not happened with the field.
+    * @param errors   receives the mappings that failed for the record, may be null
+    * @return IRecord of output format
+    */
+   public IRecord transform(IRecord record, RdpStatusDetail messages, TransformErrors errors) {
+      String entityType = getEntityType(record);
+      long start = System.nanoTime();
+      try {
+         HashCode key = outputCache == null ? null : outputCache.getKey(((JsonRecord) record).getJsonObject());
+         if (key != null) {
+            JsonObject cached = outputCache.get(key);
+            if (cached != null) {
+               metrics.recordOutputCacheHit();
+               metrics.recordTransformed(entityType, System.nanoTime() - start);
+               return new JsonRecord(cached, null);
+            }
+            metrics.recordOutputCacheMiss();
+         }
+         TransformSession session = new TransformSession(new SourceIndex((JsonRecord) record), errors);
+         List<ResolvedContext> contexts = contextResolver.resolve(session.getSourceIndex());
+         IncrementalTransform incremental = fragmentCache == null ? null
+               : fragmentCache.start(record, entityType, contexts, mappingPlan.getMappings(entityType));
+         IRecord outboundRecord = transform(session, entityType, contexts, incremental);
+         // A partial output is never cached, so its failures are reported for every record.
+         if (key != null && !session.isFailed()) {
+            outputCache.put(key, ((JsonRecord) outboundRecord).getJsonObject());
+         }
+         metrics.recordTransformed(entityType, System.nanoTime() - start);
+         return outboundRecord;
+      } catch (RuntimeException ex) {
+         metrics.recordFailed();
+         throw ex;
+      }
+   }
+
+   /**
+    * Transform record data into destination format, reusing the output of the mappings whose source attributes did
+    * not change since the entity was last transformed, and report what changed. Entities are identified by type and
+    * id; requires the {@value #INCREMENTAL_CACHE_SETTING} transform setting.
+    *
+    * @param record   input IRecord: Sample supports only JsonRecord
+    * @param messages To Log messages when transform not happened with the field.
+    * @return transformed document and its changes
+    */
+   public TransformDelta transformDelta(IRecord record, RdpStatusDetail messages) {
+      if (fragmentCache == null) {
+         throw new ConnectIllegalArgumentException("RSC7820", "Incremental transformation requires the " + INCREMENTAL_CACHE_SETTING + " setting");
+      }
+      String entityType = getEntityType(record);
+      long start = System.nanoTime();
+      try {
+         TransformSession session = new TransformSession(new SourceIndex((JsonRecord) record), null);
+         List<ResolvedContext> contexts = contextResolver.resolve(session.getSourceIndex());
+         IncrementalTransform incremental = fragmentCache.start(record, entityType, contexts, mappingPlan.getMappings(entityType));
+         IRecord outboundRecord = transform(session, entityType, contexts, incremental);
+         metrics.recordTransformed(entityType, System.nanoTime() - start);
+         // Without id the entity can not be tracked, everything is reported as changed.
+         return incremental == null ? new TransformDelta(outboundRecord, outboundRecord, Collections.emptyList()) : incremental.toDelta(outboundRecord);
+      } catch (RuntimeException ex) {
+         metrics.recordFailed();
+         throw ex;
+      }
+   }
+
+   private String getEntityType(IRecord record) {
       if (!(record instanceof JsonRecord)) {
+         metrics.recordFailed();
          throw new ConnectRuntimeException("RSC7820", "Record doesn't support for transformation");
       }
 
       String entityType = record.getValue(Constants.TYPE);
       if (Strings.isNullOrEmpty(entityType)) {
+         metrics.recordFailed();
          throw new ConnectRuntimeException("RSC7820", "Failed to get entityType from Object" + ((JsonRecord) record).getJsonObject());
       }
+      return entityType;
+   }
 
-      IRecord outboundRecord = transformRecord(record, entityType);
-      transformRelationshipRecords(entityType, record, outboundRecord);
+   private IRecord transform(TransformSession session, String entityType, List<ResolvedContext> contexts, IncrementalTransform incremental) {
+      IRecord outboundRecord;
+      if (incremental != null && incremental.isUnchanged()) {
+         outboundRecord = incremental.reuseDocument();
+         for (CompiledFieldMapping fieldMapping : mappingPlan.getMappings(entityType)) {
+            metrics.recordReuse(fieldMapping);
+         }
+      } else {
+         transformRecord(session, session.getSourceIndex().getRecord(), entityType, contexts, incremental);
+         transformRelationshipRecords(session, entityType, contexts, incremental);
+         outboundRecord = session.getOutput().getRecord();
+      }
+      if (incremental != null) {
+         if (session.isFailed()) {
+            incremental.fail();
+         }
+         incremental.finish(outboundRecord);
+      }
       return outboundRecord;
    }
 
    /**
-    * Method to transform record to JsonRecord
-    *
-    * @param inboundRecord - Input Record
-    * @param entityType    - entity Type
+    * The attributes and relationships of the source entities read by this transformer. The collect stage can use it
+    * to request or parse only those.
     */
-   private IRecord transformRecord(IRecord inboundRecord, String entityType) {
-      //Copy to new List
-      List<FieldMapping> fieldMap = config.getFieldMap().stream().map(FieldMapping::new).collect(toList());
-      IRecord outboundRecord = new JsonRecord();
-      JsonObject inboundObject = ((JsonRecord) inboundRecord).getJsonObject();
-      List<ContextMapping> contexts = TransformerHelper.getContextMappings(inboundObject, connectContext.getConnectProfile().getCollect().getFormat().getType(), connectContext.getConnectProfile().getPublish().getFormat().getType(), contextDelimiter);
-
-      if (!fieldMap.isEmpty()) {
-         getAndSetRecordValues(inboundRecord, outboundRecord, entityType, null, fieldMap, null);
-      }
-      if (contexts != null) {
-         for (ContextMapping contextMapping : contexts) {
-            contextMapping.Initialize(contextDelimiter, connectContext.getConnectProfile().getCollect().getFormat().getType(), connectContext.getConnectProfile().getPublish().getFormat().getType());
-            contextMapping.setISJson(true);
-            String contextKey = contextMapping.getKeyFromSourceRecord(inboundRecord);
-            // The context mapping may not be defined for this record.
-            // Perhaps this record defines data for some other context.
-            if (Strings.isNullOrEmpty(contextKey)) {
-               continue;
-            }
+   public SourceProjection getSourceProjection() {
+      return sourceProjection;
+   }
+
+   /**
+    * Metrics of this transformer.
+    */
+   public TransformMetrics getMetrics() {
+      return metrics;
+   }
 
-            // The context is defined, set all fields defined in this context.
-            getAndSetRecordValues(inboundRecord, outboundRecord, entityType, contextKey, fieldMap, contextMapping);
+   /**
+    * Streaming transformation of RSJSON entities. Entities are pulled from the source one at a time and only the
+    * attributes and relationships read by the mappings are materialized; the transformed entity is written to the
+    * destination as soon as it is complete. The output is the same as serializing the result of
+    * {@link #transform(IRecord, RdpStatusDetail)} for each entity.
+    *
+    * @param source      - a single entity object, or an array of entity objects
+    * @param destination - receives the transformed entity, or an array of them when the source is an array
+    * @throws IOException when the source can not be read or the destination can not be written
+    */
+   public void transform(Reader source, Writer destination) throws IOException {
+      Gson gson = GsonBuilder.getGsonInstance();
+      JsonReader reader = gson.newJsonReader(source);
+      JsonWriter writer = gson.newJsonWriter(destination);
+      if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+         reader.beginArray();
+         writer.beginArray();
+         while (reader.hasNext()) {
+            transform(reader, writer, gson);
          }
+         writer.endArray();
+         reader.endArray();
+      } else {
+         transform(reader, writer, gson);
       }
-      return outboundRecord;
+      writer.flush();
    }
 
-   private void transformRelationshipRecords(String entityType, IRecord inboundRecord, IRecord outboundRecord) {
-      try {
-         JsonObject inboundObject = ((JsonRecord) inboundRecord).getJsonObject();
-         JsonElement relationships = JsonRecord.findObject(inboundObject, String.format("%s.%s", Constants.DATA, Constants.OPERATION_SEARCH_RELATIONSHIPS));
-         processRelationships(entityType, outboundRecord, relationships);
-
-         List<ContextMapping> contexts = TransformerHelper.getContextMappings(inboundObject, connectContext.getConnectProfile().getCollect().getFormat().getType(), connectContext.getConnectProfile().getPublish().getFormat().getType(), contextDelimiter);
-         if (contexts != null) {
-            for (ContextMapping contextMapping : contexts) {
-               contextMapping.Initialize(contextDelimiter, connectContext.getConnectProfile().getCollect().getFormat().getType(), connectContext.getConnectProfile().getPublish().getFormat().getType());
-               contextMapping.setISJson(true);
-               String contextKey = contextMapping.getKeyFromSourceRecord(inboundRecord);
-               if (Strings.isNullOrEmpty(contextKey)) {
-                  continue;
-               }
+   private void transform(JsonReader reader, JsonWriter writer, Gson gson) throws IOException {
+      gson.toJson(((JsonRecord) transform(reader)).getJsonObject(), writer);
+   }
 
-               relationships = JsonRecord.findObject(inboundObject, String.format("%s.%s[%s].%s", Constants.DATA, Constants.CONTEXTS, contextKey, Constants.OPERATION_SEARCH_RELATIONSHIPS));
-               processRelationships(entityType, outboundRecord, relationships);
-            }
+   /**
+    * Streaming transformation of RSJSON entities into GS1 XML. Entities are pulled from the source one at a time as
+    * for {@link #transform(Reader, Writer)}, and each transformed entity is written as a trade item of the
+    * notification as soon as it is complete.
+    *
+    * @param source      - a single entity object, or an array of entity objects
+    * @param destination - notification receiving the transformed entities
+    * @throws IOException when the source can not be read or the destination can not be written
+    */
+   public void transform(Reader source, CatalogueItemNotificationWriter destination) throws IOException {
+      JsonReader reader = GsonBuilder.getGsonInstance().newJsonReader(source);
+      if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+         reader.beginArray();
+         while (reader.hasNext()) {
+            destination.write(transform(reader));
          }
-      } catch (Exception ex) {
-         pmLogger.error(Constants.RSCONNECT_SERVICE, "RSC7273", ex.getMessage());
+         reader.endArray();
+      } else {
+         destination.write(transform(reader));
       }
    }
 
-   private void processRelationships(String entityType, IRecord outboundRecord, JsonElement relationships) {
-      if (relationships != null && relationships.isJsonObject()) {
-         List<FieldMapping> mappings = config.getRelationships().getFieldMap();
-         if (CollectionUtils.isNotEmpty(mappings)) {
-            transformRelationships(entityType, outboundRecord, relationships, mappings);
-         }
+   private IRecord transform(JsonReader reader) throws IOException {
+      return transform(new JsonRecord(sourceProjection.read(reader), null), null);
+   }
+
+   /**
+    * Transform a batch of records in parallel on the transformer pool.
+    *
+    * @param records - input records: Sample supports only JsonRecord
+    * @return transformed records in input order, null for a record that could not be transformed
+    */
+   public List<IRecord> transformAll(List<IRecord> records) {
+      return transformAll(records, null, null);
+   }
+
+   /**
+    * Transform a batch of records in parallel on the transformer pool.
+    *
+    * @param records  - input records: Sample supports only JsonRecord
+    * @param messages - status detail of each record, in input order. May be null.
+    * @return transformed records in input order, null for a record that could not be transformed
+    */
+   public List<IRecord> transformAll(List<IRecord> records, List<RdpStatusDetail> messages) {
+      return transformAll(records, messages, null);
+   }
+
+   /**
+    * Transform a batch of records in parallel on the transformer pool. A failing record is logged and leaves a null
+    * entry in the result, the remaining records are still transformed.
+    *
+    * @param records  - input records: Sample supports only JsonRecord
+    * @param messages - status detail of each record, in input order. Each detail is only used by the task of its
+    *                 record. May be null.
+    * @param errors   - receives the mappings that failed for each record, in input order. Each entry is only used by
+    *                 the task of its record. May be null.
+    * @return transformed records in input order, null for a record that could not be transformed
+    */
+   public List<IRecord> transformAll(List<IRecord> records, List<RdpStatusDetail> messages, List<TransformErrors> errors) {
+      if (records == null || records.isEmpty()) {
+         return Collections.emptyList();
+      }
+      if (messages != null && messages.size() != records.size()) {
+         throw new ConnectIllegalArgumentException("RSC7820", "Expected " + records.size() + " status details, got " + messages.size());
       }
+      if (errors != null && errors.size() != records.size()) {
+         throw new ConnectIllegalArgumentException("RSC7820", "Expected " + records.size() + " error collectors, got " + errors.size());
+      }
+      IRecord[] results = new IRecord[records.size()];
+      pool.invoke(new TransformBatchTask(this, records, messages, errors, results, 0, records.size(),
+            TransformBatchTask.getThreshold(records.size(), pool.getParallelism())));
+      return Arrays.asList(results);
    }
 
-   private void transformRelationships(String entityType, IRecord outboundRecord, JsonElement relationships, List<FieldMapping> mappings) {
-      for (Map.Entry<String, JsonElement> entry : relationships.getAsJsonObject().entrySet()) {
-         if (entry.getValue() != null && entry.getValue().isJsonArray()) {
-            int index = 0;
-            for (JsonElement element : entry.getValue().getAsJsonArray()) {
-               if (element.isJsonObject()) {
-                  Integer[] indices = new Integer[1];
-                  indices[0] = index;
-                  getAndSetRelationshipAttributeValues(entityType, new JsonRecord(element.getAsJsonObject(), null), outboundRecord, mappings, indices);
-                  index++;
-               }
-            }
-         }
+   /**
+    * Method to transform record to JsonRecord
+    *
+    * @param inboundRecord - Input Record
+    * @param entityType    - entity Type
+    * @param contexts      - the entity and its contexts defined for the record
+    * @param incremental   - output cached from the last transformation of the entity, null when not incremental
+    */
+   private void transformRecord(TransformSession session, IRecord inboundRecord, String entityType, List<ResolvedContext> contexts, IncrementalTransform incremental) {
+      List<CompiledFieldMapping> fieldMap = mappingPlan.getMappings(entityType);
+      if (fieldMap.isEmpty()) {
+         return;
+      }
+      // Set all fields defined in the entity, then in each context defined for the record.
+      for (int context = 0; context < contexts.size(); context++) {
+         getAndSetRecordValues(session, inboundRecord, contexts.get(context), fieldMap, incremental, context);
       }
    }
 
-   private void getAndSetRelationshipAttributeValues(String entityType, JsonRecord record, IRecord outboundRecord, List<FieldMapping> mappings, Integer... indicies) {
-      Iterator<FieldMapping> iterator = mappings.iterator();
-      while (iterator.hasNext()) {
-         FieldMapping fieldMapping = iterator.next();
-         if (fieldMapping.getEntityType().equals(entityType)) {
-            String value = getRelationshipValue(record, fieldMapping, Constants.Mappings.VALUE);
-            if (!Strings.isNullOrEmpty(value)) {
-               setValue(outboundRecord, value, null, fieldMapping, null, record, indicies);
-            }
+   private void transformRelationshipRecords(TransformSession session, String entityType, List<ResolvedContext> contexts, IncrementalTransform incremental) {
+      for (int context = 0; context < contexts.size(); context++) {
+         if (incremental == null) {
+            processRelationships(session, entityType, contexts.get(context));
+         } else if (!incremental.reuseRelationships(context, session.getOutput())) {
+            session.startRecording();
+            processRelationships(session, entityType, contexts.get(context));
+            incremental.endRelationships(session, context);
          }
       }
    }
 
-   private String getRelationshipValue(IRecord inbound, FieldMapping fieldMapping, String key) {
-      String attributePath = "";
-      String field = fieldMapping.getSource();
-      if (Strings.isNullOrEmpty(field)) {
-         throw new ConnectIllegalArgumentException("RSC7820", "sourve cannot be empty. Method: getrelationshipValue");
+   private void processRelationships(TransformSession session, String entityType, ResolvedContext context) {
+      JsonElement relationships = context.getRelationships();
+      if (relationships != null && relationships.isJsonObject() && !relationshipPlan.isEmpty()) {
+         transformRelationships(session, entityType, relationships.getAsJsonObject(), context.getContextKey());
       }
-      if (FieldMapMacro.isAttribute(field)) {
-         String attributeName = FieldMapMacro.getAttribute(field);
-         attributePath = String.format("attributes.%s.values[0].%s", attributeName, key);
-      } else if (FieldMapMacro.isRelationshipAttribute(field)) {
-         FieldMapMacro.RelAttrMacroValues macroValues = FieldMapMacro.getValuesFromRelationshipAttribute(null, field);
-         attributePath = String.format("attributes.%s.values[0].%s", macroValues.attributeName, key);
-      } else if (FieldMapMacro.isRelToAttribute(field)) {
-         FieldMapMacro.RelToAttrMacroValues macroValues = FieldMapMacro.getValuesFromRelToAttribute(null, field);
-         attributePath = String.format("relTo.data.attributes.%s.values[0].%s", macroValues.attributeName, key);
+   }
+
+   private void transformRelationships(TransformSession session, String entityType, JsonObject relationships, String contextKey) {
+      for (Map.Entry<String, JsonElement> entry : relationships.entrySet()) {
+         List<RelationshipMapping> mappings = relationshipPlan.getMappings(entityType, entry.getKey());
+         if (mappings.isEmpty() || entry.getValue() == null || !entry.getValue().isJsonArray()) {
+            continue;
+         }
+         int index = 0;
+         for (JsonElement element : entry.getValue().getAsJsonArray()) {
+            if (element.isJsonObject()) {
+               getAndSetRelationshipAttributeValues(session, element.getAsJsonObject(), mappings, index, contextKey);
+               index++;
+            }
+         }
       }
-      if (Strings.isNullOrEmpty(attributePath)) {
-         attributePath = field;
+   }
+
+   private void getAndSetRelationshipAttributeValues(TransformSession session, JsonObject relationship, List<RelationshipMapping> mappings, int index,
+                                                     String contextKey) {
+      JsonRecord record = null;
+      int[] indices = null;
+      for (RelationshipMapping mapping : mappings) {
+         try {
+            String value = mapping.getValue(relationship);
+            if (!Strings.isNullOrEmpty(value)) {
+               if (record == null) {
+                  record = new JsonRecord(relationship, null);
+                  indices = new int[]{index};
+               }
+               SourceValues sourceValues = session.getSourceValues();
+               sourceValues.reset(null);
+               sourceValues.add(value, null, mapping.getMapping().isLocalizable()
+                     ? TransformerHelper.getSourceFieldValue(record, mapping.getMapping().getFieldMapping(), null, SourceValueExtractor.LOCALE, 0, index) : null);
+               setValue(session, sourceValues, null, mapping.getMapping(), record, indices, 1);
+               metrics.recordHit(mapping.getMapping());
+            } else {
+               metrics.recordMiss(mapping.getMapping());
+            }
+         } catch (RuntimeException ex) {
+            fail(session, mapping.getMapping(), contextKey, getReason(ex));
+         }
       }
-      return inbound.getValue(attributePath);
    }
 
    /**
     * Set all fields defined in this entity and context.
     */
-   private void getAndSetRecordValues(IRecord inboundRecord, IRecord outboundRecord, String entityType, String contextKey, List<FieldMapping> fieldMap, ContextMapping contextMapping) {
-      try {
-         Iterator<FieldMapping> iterator = fieldMap.iterator();
-         while (iterator.hasNext()) {
-            FieldMapping fieldMapping = iterator.next();
-            if (!fieldMapping.isEnabled()) {
+   private void getAndSetRecordValues(TransformSession session, IRecord inboundRecord, ResolvedContext context, List<CompiledFieldMapping> fieldMap,
+                                      IncrementalTransform incremental, int contextIndex) {
+      String contextKey = context.getContextKey();
+      JsonObject attributes = context.getAttributes();
+      for (int position = 0; position < fieldMap.size(); position++) {
+         CompiledFieldMapping fieldMapping = fieldMap.get(position);
+         if (incremental != null) {
+            if (incremental.reuseMapping(contextIndex, position, session.getOutput())) {
+               metrics.recordReuse(fieldMapping);
                continue;
             }
-            if (fieldMapping.getEntityType() == null || !fieldMapping.getEntityType().equals(entityType)) {
-               continue;
-            }
-            if (isMultiLevelAttribute(fieldMapping)) {
-               setValueForLevels(inboundRecord, outboundRecord, fieldMapping, contextKey);
-            } else {
-               int index = 0;
-               String value = getValue(inboundRecord, contextKey, fieldMapping, index);
-               if (!Strings.isNullOrEmpty(value)) {
-                  String uomValue = null;
-                  if (fieldMapping.hasUOM()) {
-                     uomValue = TransformerHelper.getValueFromUOMField(inboundRecord, contextKey, config.getSettings().getCollectionSeparator(), fieldMapping, index, value);
-                  }
-                  setValue(outboundRecord, value, contextKey, fieldMapping, uomValue, inboundRecord);
+            session.startRecording();
+         }
+         if (fieldMapping.isMultiLevel()) {
+            setValueForLevels(session, inboundRecord, attributes, fieldMapping, contextKey);
+         } else {
+            try {
+               SourceValues sourceValues = extractValues(session, inboundRecord, attributes, contextKey, fieldMapping);
+               if (!sourceValues.isEmpty()) {
+                  setValue(session, sourceValues, contextKey, fieldMapping, inboundRecord, NO_INDICES, 0);
+                  metrics.recordHit(fieldMapping);
                } else {
-                  pmLogger.debug("", Constants.RSCONNECT_SERVICE, "RSC7273", fieldMapping.getSource());
+                  metrics.recordMiss(fieldMapping);
                }
+            } catch (RuntimeException ex) {
+               fail(session, fieldMapping, contextKey, getReason(ex));
+               continue;
             }
          }
-      } catch (Exception ex) {
-         pmLogger.error("", Constants.RSCONNECT_SERVICE, "RSC7273", ex);
+         if (incremental != null) {
+            incremental.endMapping(session, contextIndex, position);
+         }
       }
    }
 
    /**
-    * Get the value of this field.
+    * Record a failed mapping and go on with the next one. The partial output of the record is neither cached nor
+    * reused.
     */
-   private String getValue(IRecord record, String sourceContextKey, FieldMapping fieldMapping, int index, Integer... parentIndices) {
-      if (fieldMapping.isCollectionType() || fieldMapping.isLocalizable()) {
-         StringJoiner joiner = new StringJoiner(config.getSettings().getCollectionSeparator());
-         index = 0;
-         while (true) {
-            String value = getValueInContext(record, fieldMapping, sourceContextKey, index, parentIndices);
-            // When null, we have reached the end of the array.
+   private void fail(TransformSession session, CompiledFieldMapping fieldMapping, String contextKey, String reason) {
+      metrics.recordError(fieldMapping);
+      session.fail(fieldMapping, contextKey, reason);
+      errorLog.log(fieldMapping, contextKey, reason);
+   }
+
+   private static String getReason(RuntimeException ex) {
+      return ex.getMessage() == null ? ex.getClass().getName() : ex.getMessage();
+   }
+
+   /**
+    * Extract the values of this field with their UOM and locale. Attribute sources are read from the values array of
+    * the attribute, resolved once; any other source is read through the record.
+    */
+   private SourceValues extractValues(TransformSession session, IRecord inboundRecord, JsonObject attributes, String contextKey, CompiledFieldMapping fieldMapping) {
+      SourceValues sourceValues = session.getSourceValues();
+      if (fieldMapping.getSourcePath() != null) {
+         JsonArray values = attributes == null ? null : fieldMapping.getSourcePath().getValues(attributes);
+         SourceValueExtractor.extract(values, fieldMapping, sourceValues);
+         return sourceValues;
+      }
+      sourceValues.reset(null);
+      // Found once per mapping and context. Values missing from it are read through the record, which also checks
+      // the self context.
+      JsonArray values = getValuesArray(session, fieldMapping, contextKey);
+      if (values == null) {
+         return sourceValues;
+      }
+      if (fieldMapping.isCollection()) {
+         for (int index = 0; index < values.size(); index++) {
+            String value = getSourceField(values, inboundRecord, contextKey, fieldMapping, Constants.Mappings.VALUE, true, index);
+            // When empty, we have reached the end of the values.
             if (Strings.isNullOrEmpty(value)) {
                break;
             }
-            joiner.add(value);
-            index++;
+            sourceValues.add(value, getSourceField(values, inboundRecord, contextKey, fieldMapping, SourceValueExtractor.UOM, fieldMapping.hasUOM(), index),
+                  getSourceField(values, inboundRecord, contextKey, fieldMapping, SourceValueExtractor.LOCALE, fieldMapping.isLocalizable(), index));
          }
-         return joiner.toString();
       } else {
-         return getValueInContext(record, fieldMapping, sourceContextKey, index, parentIndices);
+         String value = getSourceField(values, inboundRecord, contextKey, fieldMapping, Constants.Mappings.VALUE, true, 0);
+         if (!Strings.isNullOrEmpty(value)) {
+            sourceValues.add(value, fieldMapping.hasUOM()
+                  ? TransformerHelper.getValueFromUOMField(inboundRecord, contextKey, collectionSeparator, fieldMapping.getFieldMapping(), 0, value) : null, null);
+         }
       }
+      return sourceValues;
    }
 
-   private boolean isMultiLevelAttribute(FieldMapping fieldMapping) {
-      return nestedTyes.contains(fieldMapping.getType());
+   /**
+    * Get the values array of the source in the given context, walked once per record through the source index. Null
+    * when the source does not read a values array or the array is missing or empty: the source then has no values.
+    */
+   private static JsonArray getValuesArray(TransformSession session, CompiledFieldMapping fieldMapping, String contextKey) {
+      String valuePath = TransformerHelper.getSourceFieldInContext(fieldMapping.getSource(), contextKey, Constants.Mappings.VALUE, 0);
+      if (!valuePath.endsWith(VALUE_SUFFIX)) {
+         return null;
+      }
+      JsonArray values = session.getSourceIndex().findArray(valuePath.substring(0, valuePath.length() - VALUE_SUFFIX.length()));
+      return values == null || values.size() == 0 ? null : values;
    }
 
    /**
-    * Get value from record. If value not found, check in self context. To support flat hierarchy RSJSON format.
+    * Read a field of the value at the given index, from the values array or else through the record.
     */
-   private String getValueInContext(IRecord record, FieldMapping fieldMapping, String sourceContextKey, int index, Integer... parentIndices) {
-      String attributePath = TransformerHelper.getSourceFieldInContext(fieldMapping.getSource(), sourceContextKey, Constants.Mappings.VALUE, 0, parentIndices);
-      index = getIndex(record, fieldMapping, index, attributePath);
-
-      return TransformerHelper.getSourceFieldValue(record, fieldMapping, sourceContextKey, Constants.Mappings.VALUE, index, parentIndices);
-   }
-
-   private int getIndex(IRecord record, FieldMapping fieldMapping, int index, String attributePath) {
-      attributePath = attributePath.replaceAll(Pattern.quote("[0].value"), "").replaceAll(Pattern.quote("[0].src"), "");
-      JsonArray values = JsonRecord.findArray(((JsonRecord) record).getJsonObject(), attributePath);
-      int matchCount = 0;
-      if (values != null && values.size() > 0) {
-         int loopIndex = 0;
-         for (JsonElement valueElement : values) {
-            ++matchCount;
-            if (!fieldMapping.isCollectionType() && !fieldMapping.isLocalizable()) {
-               index = loopIndex;
-               break;
-            } else {
-               if (index == matchCount - 1) {
-                  index = loopIndex;
-                  break;
-               }
-            }
-            ++loopIndex;
-         }
-         if (loopIndex == values.size()) {
-            index = loopIndex;
-         }
-      }
-      if (matchCount == 0) {
-         index = 10000;
+   private static String getSourceField(JsonArray values, IRecord record, String contextKey, CompiledFieldMapping fieldMapping, String key, boolean mapped, int index) {
+      if (!mapped) {
+         return null;
       }
-      return index;
+      String value = Strings.emptyToNull(SourceValueExtractor.getString(values, index, key));
+      return value != null ? value : TransformerHelper.getSourceFieldValue(record, fieldMapping.getFieldMapping(), contextKey, key, index);
    }
 
    /**
-    * Set the value of this field in specified context.
+    * Set the values of this field in specified context: the value alone for single valued mappings, one destination
+    * entry per value for collection mappings.
     */
-   private void setValue(IRecord record, String value, String contextKey, FieldMapping fieldMapping, String uom, IRecord inboundRecord, Integer... nestedIndices) {
-      int index = 0;
-      if (fieldMapping.isCollectionType() || fieldMapping.isLocalizable()) {
-         String[] uoms = null;
-         if (fieldMapping.hasUOM() && !Strings.isNullOrEmpty(uom)) {
-            uoms = uom.split(Pattern.quote(config.getSettings().getCollectionSeparator()));
-         }
-         for (String subValue : value.split(Pattern.quote(config.getSettings().getCollectionSeparator()))) {
-            String uomValue = null;
-            if (fieldMapping.hasUOM() && uoms != null) {
-               if ((index < uoms.length)) {
-                  uomValue = uoms[index];
-               }
-            }
-            setFieldValue(inboundRecord, record, contextKey, fieldMapping, index, subValue, uomValue, nestedIndices);
-            index++;
-         }
-      } else {
-         setFieldValue(inboundRecord, record, contextKey, fieldMapping, index, value, uom, nestedIndices);
+   private void setValue(TransformSession session, SourceValues sourceValues, String contextKey, CompiledFieldMapping fieldMapping, IRecord inboundRecord, int[] parentIndices, int parentCount) {
+      for (int index = 0; index < sourceValues.size(); index++) {
+         setFieldValue(session, inboundRecord, sourceValues, contextKey, fieldMapping, index, parentIndices, parentCount);
       }
    }
 
-   private void setFieldValue(IRecord inboundRecord, IRecord record, String contextKey, FieldMapping fieldMapping, int index, String value, String uomValue, Integer... nestedIndices) {
-      String field;
-      if (fieldMapping.getType().equalsIgnoreCase("referenceTypeData")) {
-         field = getDestiantionPath(fieldMapping.getDestination());
-         String[] fields = field.split("#@#");
+   private void setFieldValue(TransformSession session, IRecord inboundRecord, SourceValues sourceValues, String contextKey, CompiledFieldMapping fieldMapping, int index, int[] parentIndices, int parentCount) {
+      session.setIndices(index, fieldMapping.isCollection(), parentIndices, parentCount);
+      String value = sourceValues.getValue(index);
+      if (fieldMapping.isReferenceData()) {
+         DestinationTemplate[] fields = fieldMapping.getDestinationFields();
+         setRecordValue(session, fieldMapping, fields[0], value);
          if (fields.length == 2) {
-            setRecordValue(record, fieldMapping, fields[0], index, value, nestedIndices);
-            value = TransformerHelper.getSourceFieldValue(inboundRecord, fieldMapping, contextKey, "properties.referenceDataIdentifier", index, nestedIndices);
-            setRecordValue(record, fieldMapping, fields[1], index, value, nestedIndices);
-         } else {
-            setRecordValue(record, fieldMapping, field, index, value, nestedIndices);
+            String identifier = sourceValues.getValues() != null ? SourceValueExtractor.getReferenceDataIdentifier(sourceValues.getValues(), index)
+                  : TransformerHelper.getSourceFieldValue(inboundRecord, fieldMapping.getFieldMapping(), contextKey, "properties.referenceDataIdentifier", index, box(parentIndices, parentCount));
+            setRecordValue(session, fieldMapping, fields[1], identifier);
          }
       } else if (fieldMapping.isLocalizable()) {
-         field = getDestinationField(fieldMapping.getDestination(), index, fieldMapping, nestedIndices);
-         String localeString = TransformerHelper.getSourceFieldValue(inboundRecord, fieldMapping, contextKey, "locale", index, nestedIndices);
-         Locale locale = Locale.forLanguageTag(localeString);
-         setValue(record, fieldMapping, locale.getLanguage(), "%s.@languageCode", field);
-         setValue(record, fieldMapping, value, "%s.__value__", field);
+         String languageCode = LanguageCodes.get(sourceValues.getLocale(index));
+         if (languageCode == null) {
+            // A localized value without its language code is not written.
+            fail(session, fieldMapping, contextKey, "no locale on localizable value " + value);
+         } else {
+            setRecordValue(session, fieldMapping, fieldMapping.getLanguageCodeTemplate(), languageCode);
+            setRecordValue(session, fieldMapping, fieldMapping.getLocalizedValueTemplate(), value);
+         }
       } else if (fieldMapping.hasUOM()) {
-         field = getDestiantionPath(fieldMapping.getDestination());
-         String[] fields = field.split("#@#");
+         DestinationTemplate[] fields = fieldMapping.getDestinationFields();
          if (fields.length == 2) {
-            setRecordValue(record, fieldMapping, fields[0], index, uomValue, nestedIndices);
-            setRecordValue(record, fieldMapping, fields[1], index, value, nestedIndices);
+            setRecordValue(session, fieldMapping, fields[0], sourceValues.getUOM(index));
+            setRecordValue(session, fieldMapping, fields[1], value);
          } else {
-            setRecordValue(record, fieldMapping, field, index, value, nestedIndices);
+            setRecordValue(session, fieldMapping, fields[0], value);
          }
       } else {
-         setRecordValue(record, fieldMapping, fieldMapping.getDestination(), index, value, nestedIndices);
+         setRecordValue(session, fieldMapping, fieldMapping.getDestinationTemplate(), value);
       }
    }
 
-   private void setRecordValue(IRecord record, FieldMapping fieldMapping, String field, int index, String value, Integer[] nestedIndices) {
-      field = getDestinationField(field, index, fieldMapping, nestedIndices);
-      setValue(record, fieldMapping, value, field);
-   }
-
-   private void setValue(IRecord record, FieldMapping fieldMapping, String value, String path, Object... params) {
-      String destinationField = String.format(path, params);
-      record.setValue(destinationField, value, fieldMapping.getType(), true);
-   }
-
    /**
-    * Get the final destination field which can be understood by the record set/get value.
+    * Box the parent indices for the record lookups of {@link TransformerHelper}.
     */
-   private String getDestinationField(String field, int index, FieldMapping fieldMapping, Integer... parentIndices) {
-      if (Strings.isNullOrEmpty(field)) {
-         throw new ConnectIllegalArgumentException("RSC7820", "field cannot be null");
-      }
-      List<Integer> indexArray = getIndexArray(index, fieldMapping, parentIndices);
-      if(GDSNFieldMapMacro.isAttribute(field)) {
-         return GDSNFieldMapMacro.getAttribute(field);
-         //This is required for internal attribute transformation
-      }
-      else if (GDSNFieldMapMacro.isPath(field)) {
-         String path = GDSNFieldMapMacro.getPath(field);
-         if (fieldMapping.getType().equalsIgnoreCase("referenceTypeData")) {
-            return path;
-         }
-         return String.format(path, indexArray.toArray());
-      } else if (GDSNFieldMapMacro.isRelPath(field)) {
-         String path = GDSNFieldMapMacro.getRelPath(field);
-         if (fieldMapping.getType().equalsIgnoreCase("referenceTypeData")) {
-            return path;
-         }
-         return String.format(path, indexArray.toArray());
-      } else if (field.contains("[%d]")) {
-         return String.format(field, indexArray.toArray());
+   private static Integer[] box(int[] parentIndices, int parentCount) {
+      Integer[] boxed = new Integer[parentCount];
+      for (int i = 0; i < parentCount; i++) {
+         boxed[i] = parentIndices[i];
       }
-      return field;
+      return boxed;
    }
 
-   private String getDestiantionPath(String field) {
-      if (Strings.isNullOrEmpty(field)) {
-         throw new ConnectIllegalArgumentException("RSC7820", "field cannot be null");
-      }
-      if (GDSNFieldMapMacro.isPath(field)) {
-         return GDSNFieldMapMacro.getPath(field);
-      } else if (GDSNFieldMapMacro.isRelPath(field)) {
-         return GDSNFieldMapMacro.getRelPath(field);
-      }
-      return field;
+   private void setRecordValue(TransformSession session, CompiledFieldMapping fieldMapping, DestinationTemplate field, String value) {
+      session.write(field, value, fieldMapping.getType());
    }
 
-   private List<Integer> getIndexArray(int index, FieldMapping fieldMapping, Integer[] parentIndices) {
-      List<Integer> indexArray = new ArrayList<>();
-      if (parentIndices != null && parentIndices.length > 0) {
-         for (int i = 0; i < parentIndices.length; i++) {
-            indexArray.add(parentIndices[i]);
-         }
-         if (fieldMapping.isCollectionType() || fieldMapping.isLocalizable()) {
-            indexArray.add(index);
+   /**
+    * Set the values of the child mappings of a nested mapping, visiting the groups of the record once. A failing
+    * child leaves out its value in that group only.
+    */
+   private void setValueForLevels(TransformSession session, IRecord inboundRecord, JsonObject attributes, CompiledFieldMapping fieldMapping, String contextKey) {
+      SourceValues sourceValues = session.getSourceValues();
+      fieldMapping.getGroups().traverse(attributes, (childFieldMapping, attribute, parentIndices, depth) -> {
+         try {
+            SourceValueExtractor.extract(SourcePath.valuesOf(attribute), childFieldMapping, sourceValues);
+            if (!sourceValues.isEmpty()) {
+               setValue(session, sourceValues, contextKey, childFieldMapping, inboundRecord, parentIndices, depth);
+               metrics.recordHit(childFieldMapping);
+            } else {
+               metrics.recordMiss(childFieldMapping);
+            }
+         } catch (RuntimeException ex) {
+            fail(session, childFieldMapping, contextKey, getReason(ex));
          }
-      } else {
-         indexArray.add(index);
-      }
-      return indexArray;
+      });
    }
 
    @Override
@@ -446,81 +720,13 @@ public class GDSNTransformer implements IRecordTransformer {
             ", outboundFormat = " + connectContext.getConnectProfile().getPublish().getFormat().getType();
    }
 
-   private void setValueForLevels(IRecord inboundRecord, IRecord outboundRecord, FieldMapping fieldMapping, String contextKey) {
-      for (FieldMapping childFieldMapping :
-            fieldMapping.getChildFieldMappings()) {
-         String attributeName = FieldMapMacro.getAttribute(childFieldMapping.getSource());
-         Integer firstIndexOfParent = attributeName.indexOf(".group[");
-         String firstParentName = attributeName.substring(0, firstIndexOfParent);
-         Integer groupCount = getGroupCount(childFieldMapping.getSource());
-         String firstParentPath;
-         if (Strings.isNullOrEmpty(contextKey)) {
-            firstParentPath = String.format(Constants.Mapping.ENTITY_ATTRIBUTE_IN_SELF, firstParentName);
-         } else {
-            firstParentPath = String.format(Constants.Mapping.ENTITY_ATTRIBUTE_IN_CONTEXT,
-                  contextKey, firstParentName);
-         }
-         JsonObject attributeParentObject = JsonRecord.findObject(((JsonRecord) inboundRecord).getJsonObject(), firstParentPath);
-         if (attributeParentObject != null) {
-            ArrayList<Integer> parentIndicesList = new ArrayList<>();
-            getAndSetValuesForChild(inboundRecord, outboundRecord, contextKey, attributeParentObject, childFieldMapping, groupCount, parentIndicesList, 0);
-         }
-      }
-
-   }
-
-   private void getAndSetValuesForChild(IRecord inboundRecord, IRecord outboundRecord, String sourceContextKey,
-                                        JsonObject attributeParentObject, FieldMapping fieldMapping, Integer groupCount,
-                                        ArrayList<Integer> parentIndices, Integer currentParentIndex) {
-      if (attributeParentObject != null && attributeParentObject.has(Constants.NESTED_ATTRIBUTES_GROUP)) {
-         JsonArray groups = attributeParentObject.get(Constants.NESTED_ATTRIBUTES_GROUP).getAsJsonArray();
-         if (groups != null && groups.size() > 0) {
-            for (int index = 0; index < groups.size(); ++index) {
-               if (parentIndices.size() > currentParentIndex) {
-                  parentIndices.set(currentParentIndex, index);
-               } else {
-                  parentIndices.add(currentParentIndex, index);
-               }
-               JsonObject childAttributes = groups.get(index).getAsJsonObject();
-               for (Map.Entry<String, JsonElement> childAttributeMap : childAttributes.entrySet()) {
-                  if (childAttributeMap.getValue() instanceof JsonObject) {
-                     if (fieldMapping.getSource().endsWith("." + childAttributeMap.getKey() + ")")
-                           && parentIndices.size() == groupCount) {
-                        int count = 0;
-                        String value = getValue(inboundRecord, sourceContextKey, fieldMapping, count, parentIndices.toArray(new Integer[parentIndices.size()]));
-                        if (!Strings.isNullOrEmpty(value)) {
-                           String uomValue = null;
-                           if (fieldMapping.hasUOM()) {
-                              uomValue = TransformerHelper.getValueFromUOMField(inboundRecord, sourceContextKey, config.getSettings().getCollectionSeparator(), fieldMapping, count, value, parentIndices.toArray(new Integer[parentIndices.size()]));
-                           }
-                           setValue(outboundRecord, value, sourceContextKey, fieldMapping, uomValue, inboundRecord, parentIndices.toArray(new Integer[parentIndices.size()]));
-
-                        }
-                        count++;
-                     } else if (childAttributeMap.getValue().getAsJsonObject().has(Constants.NESTED_ATTRIBUTES_GROUP) && parentIndices.size() < groupCount) {
-                        getAndSetValuesForChild(inboundRecord, outboundRecord, sourceContextKey, childAttributeMap.getValue().getAsJsonObject(), fieldMapping, groupCount, parentIndices, currentParentIndex + 1);
-                        parentIndices.remove(currentParentIndex + 1);
-                     }
-                  }
-               }
-            }
-         }
-      }
-   }
-
-   private Integer getGroupCount(String source) {
-      Integer groupCount = 0;
-      Integer groupIndex = source.indexOf("group[", 0);
-      while (groupIndex != -1) {
-         ++groupCount;
-         groupIndex = source.indexOf("group[", groupIndex + 1);
-      }
-      return groupCount;
-
-   }
-
    @Override
    public void close() throws Exception {
-
+      if (metricsRegistry != null) {
+         metricsRegistry.unregister(connectContext.getConnectProfile().getId(), metrics);
+      }
+      if (ownsPool) {
+         pool.shutdown();
+      }
    }
 }
\ No newline at end of file
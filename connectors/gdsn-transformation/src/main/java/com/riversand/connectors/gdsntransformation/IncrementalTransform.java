@@ -0,0 +1,219 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.riversand.rsconnect.interfaces.models.IRecord;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Incremental transformation of one record. The source attributes of every mapping (and the relationships of
+ * every context) are fingerprinted up front; a mapping whose fingerprint matches the last transformation of the
+ * entity replays its cached output instead of being computed again. When nothing changed, the cached document is
+ * returned as a whole.
+ * <p>
+ * Fragments are replayed in mapping order, interleaved with the recomputed ones, so the document is the same as the
+ * one of a full transformation.
+ */
+final class IncrementalTransform {
+   private final FragmentCache cache;
+   private final String key;
+   // Last output of the entity, and the same when its fragments can be reused.
+   private final FragmentCache.Snapshot last;
+   private final FragmentCache.Snapshot previous;
+   private final List<CompiledFieldMapping> fieldMap;
+   private final String[] contextKeys;
+   private final boolean[][] fingerprinted;
+   private final long[][] fingerprints;
+   private final long[] relationshipFingerprints;
+   private final OutputFragment[][] mappings;
+   private final OutputFragment[] relationships;
+   private boolean failed;
+
+   IncrementalTransform(FragmentCache cache, String key, FragmentCache.Snapshot last, List<ResolvedContext> contexts, List<CompiledFieldMapping> fieldMap) {
+      this.cache = cache;
+      this.last = last;
+      this.key = key;
+      this.fieldMap = fieldMap;
+      this.contextKeys = new String[contexts.size()];
+      this.fingerprinted = new boolean[contexts.size()][fieldMap.size()];
+      this.fingerprints = new long[contexts.size()][fieldMap.size()];
+      this.relationshipFingerprints = new long[contexts.size()];
+      this.mappings = new OutputFragment[contexts.size()][fieldMap.size()];
+      this.relationships = new OutputFragment[contexts.size()];
+      for (int context = 0; context < contexts.size(); context++) {
+         ResolvedContext resolvedContext = contexts.get(context);
+         contextKeys[context] = resolvedContext.getContextKey();
+         for (int position = 0; position < fieldMap.size(); position++) {
+            String[] attributeNames = fieldMap.get(position).getSourceAttributeNames();
+            if (attributeNames != null) {
+               fingerprinted[context][position] = true;
+               fingerprints[context][position] = Fingerprints.of(resolvedContext.getAttributes(), attributeNames);
+            }
+         }
+         relationshipFingerprints[context] = Fingerprints.of(resolvedContext.getRelationships());
+      }
+      // Fragments are only reused for the same contexts, in the same order.
+      this.previous = last != null && Arrays.equals(last.getContextKeys(), contextKeys) ? last : null;
+   }
+
+   /**
+    * Check whether no source read by the mappings changed since the last transformation of the entity.
+    */
+   boolean isUnchanged() {
+      if (previous == null) {
+         return false;
+      }
+      for (int context = 0; context < contextKeys.length; context++) {
+         for (int position = 0; position < fieldMap.size(); position++) {
+            OutputFragment fragment = previous.getMappings()[context][position];
+            if (fragment == null || !fragment.matches(fingerprinted[context][position], fingerprints[context][position])) {
+               return false;
+            }
+         }
+         OutputFragment fragment = previous.getRelationships()[context];
+         if (fragment == null || !fragment.matches(true, relationshipFingerprints[context])) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /**
+    * Reuse the whole output of the last transformation, when {@link #isUnchanged()}.
+    *
+    * @return copy of the cached document
+    */
+   IRecord reuseDocument() {
+      System.arraycopy(previous.getRelationships(), 0, relationships, 0, relationships.length);
+      for (int context = 0; context < contextKeys.length; context++) {
+         System.arraycopy(previous.getMappings()[context], 0, mappings[context], 0, fieldMap.size());
+      }
+      return new JsonRecord(previous.getDocument().deepCopy(), null);
+   }
+
+   /**
+    * Replay the cached output of a mapping when its source did not change.
+    *
+    * @param context  - index of the context
+    * @param position - position of the mapping in the field map
+    * @param output   - outbound document
+    * @return true when the output was replayed, false when the mapping must be computed
+    */
+   boolean reuseMapping(int context, int position, OutputDocument output) {
+      OutputFragment fragment = previous == null ? null : previous.getMappings()[context][position];
+      if (fragment == null || !fragment.matches(fingerprinted[context][position], fingerprints[context][position])) {
+         return false;
+      }
+      fragment.replay(output);
+      mappings[context][position] = fragment;
+      return true;
+   }
+
+   /**
+    * Keep the output recorded by the session for a computed mapping.
+    */
+   void endMapping(TransformSession session, int context, int position) {
+      mappings[context][position] = new OutputFragment(fingerprinted[context][position], fingerprints[context][position], session.stopRecording());
+   }
+
+   /**
+    * Replay the cached output of the relationships of a context when they did not change.
+    *
+    * @param context - index of the context
+    * @param output  - outbound document
+    * @return true when the output was replayed, false when the relationships must be transformed
+    */
+   boolean reuseRelationships(int context, OutputDocument output) {
+      OutputFragment fragment = previous == null ? null : previous.getRelationships()[context];
+      if (fragment == null || !fragment.matches(true, relationshipFingerprints[context])) {
+         return false;
+      }
+      fragment.replay(output);
+      relationships[context] = fragment;
+      return true;
+   }
+
+   /**
+    * Keep the output recorded by the session for the relationships of a context.
+    */
+   void endRelationships(TransformSession session, int context) {
+      relationships[context] = new OutputFragment(true, relationshipFingerprints[context], session.stopRecording());
+   }
+
+   /**
+    * Mark the transformation as failed: a partial output is never cached.
+    */
+   void fail() {
+      failed = true;
+   }
+
+   /**
+    * Cache the output of the transformation, or drop the cached one when the transformation failed.
+    *
+    * @param document - transformed document
+    */
+   void finish(IRecord document) {
+      if (failed) {
+         cache.remove(key);
+         return;
+      }
+      cache.put(key, new FragmentCache.Snapshot(contextKeys, mappings, relationships, ((JsonRecord) document).getJsonObject().deepCopy()));
+   }
+
+   /**
+    * Get the difference between the output of this transformation and the previous one of the entity.
+    *
+    * @param document - transformed document
+    * @return delta
+    */
+   TransformDelta toDelta(IRecord document) {
+      OutputDocument changes = new OutputDocument();
+      boolean changed = false;
+      Set<String> paths = new HashSet<>();
+      for (int context = 0; context < contextKeys.length; context++) {
+         for (int position = 0; position < fieldMap.size(); position++) {
+            OutputFragment before = previous == null ? null : previous.getMappings()[context][position];
+            changed |= addChanges(before, mappings[context][position], changes, paths);
+         }
+         OutputFragment before = previous == null ? null : previous.getRelationships()[context];
+         changed |= addChanges(before, relationships[context], changes, paths);
+      }
+      // Paths written last time and not anymore, also when the contexts changed and no fragment could be compared.
+      List<String> removedPaths = new ArrayList<>();
+      if (last != null) {
+         Set<String> lastPaths = new HashSet<>();
+         for (OutputFragment[] contextFragments : last.getMappings()) {
+            addPaths(contextFragments, lastPaths);
+         }
+         addPaths(last.getRelationships(), lastPaths);
+         lastPaths.removeAll(paths);
+         removedPaths.addAll(lastPaths);
+      }
+      return new TransformDelta(document, changed ? changes.getRecord() : null, removedPaths);
+   }
+
+   private static boolean addChanges(OutputFragment before, OutputFragment after, OutputDocument changes, Set<String> paths) {
+      if (after == null) {
+         return false;
+      }
+      after.addPathsTo(paths);
+      // A fragment that stopped writing only shows in the removed paths.
+      if (after.isEmpty() || after.hasSameOutput(before)) {
+         return false;
+      }
+      after.replay(changes);
+      return true;
+   }
+
+   private static void addPaths(OutputFragment[] fragments, Set<String> paths) {
+      for (OutputFragment fragment : fragments) {
+         if (fragment != null) {
+            fragment.addPathsTo(paths);
+         }
+      }
+   }
+}
@@ -0,0 +1,53 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManager;
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManagerLogger;
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+
+/**
+ * Publishes transformer metrics as MXBeans on the platform MBean server, named
+ * {@code com.riversand.connectors.gdsntransformation:type=TransformMetrics,profile=<profile id>,instance=<n>}.
+ */
+public class JmxTransformMetricsRegistry implements TransformMetricsRegistry {
+   private static final String DOMAIN = "com.riversand.connectors.gdsntransformation";
+   private static final AtomicLong instances = new AtomicLong();
+
+   private final ProfilerManagerLogger pmLogger = ProfilerManager.getLogger(JmxTransformMetricsRegistry.class);
+   private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+   private final Map<TransformMetrics, ObjectName> names = new ConcurrentHashMap<>();
+
+   @Override
+   public void register(String profileId, TransformMetrics metrics) {
+      try {
+         ObjectName name = new ObjectName(DOMAIN + ":type=TransformMetrics,profile=" + ObjectName.quote(String.valueOf(profileId))
+               + ",instance=" + instances.incrementAndGet());
+         server.registerMBean(metrics, name);
+         names.put(metrics, name);
+      } catch (JMException ex) {
+         // Metrics are still collected, only not published.
+         pmLogger.error(Constants.RSCONNECT_SERVICE, "RSC7273", "Failed to register transform metrics: " + ex.getMessage());
+      }
+   }
+
+   @Override
+   public void unregister(String profileId, TransformMetrics metrics) {
+      ObjectName name = names.remove(metrics);
+      if (name == null) {
+         return;
+      }
+      try {
+         server.unregisterMBean(name);
+      } catch (JMException ex) {
+         pmLogger.error(Constants.RSCONNECT_SERVICE, "RSC7273", "Failed to unregister transform metrics: " + ex.getMessage());
+      }
+   }
+}
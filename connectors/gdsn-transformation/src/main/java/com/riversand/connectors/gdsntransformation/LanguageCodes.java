@@ -0,0 +1,43 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GDSN language codes of source locales. A catalog uses a handful of locales for millions of localized values, so
+ * the language of every locale tag is parsed once and shared by all transformers. The cache is bounded; tags seen
+ * once it is full are parsed on every call.
+ */
+final class LanguageCodes {
+   static final int MAX_SIZE = 1024;
+
+   private static final Map<String, String> languageCodes = new ConcurrentHashMap<>();
+
+   private LanguageCodes() {
+   }
+
+   /**
+    * Get the language code of a locale, e.g. {@code en} for {@code en-US}.
+    *
+    * @param localeTag - IETF BCP 47 locale tag of the source value
+    * @return language code, empty when the tag has no language, null without tag
+    */
+   static String get(String localeTag) {
+      if (localeTag == null) {
+         return null;
+      }
+      String languageCode = languageCodes.get(localeTag);
+      if (languageCode == null) {
+         languageCode = Locale.forLanguageTag(localeTag).getLanguage();
+         if (languageCodes.size() < MAX_SIZE) {
+            languageCodes.putIfAbsent(localeTag, languageCode);
+         }
+      }
+      return languageCode;
+   }
+
+   static int size() {
+      return languageCodes.size();
+   }
+}
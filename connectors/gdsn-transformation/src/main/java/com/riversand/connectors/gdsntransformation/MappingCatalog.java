@@ -0,0 +1,37 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.riversand.rsconnect.common.config.FieldMapping;
+
+/**
+ * Assigns every compiled mapping of a transformer, nested child and relationship mappings included, a dense
+ * ordinal. Per-mapping state such as metrics counters is kept in arrays indexed by the ordinal.
+ */
+final class MappingCatalog {
+   private final List<String> names = new ArrayList<>();
+
+   /**
+    * Register a mapping.
+    *
+    * @param fieldMapping - mapping being compiled
+    * @return ordinal of the mapping
+    */
+   int add(FieldMapping fieldMapping) {
+      names.add(fieldMapping.getSource() + " -> " + fieldMapping.getDestination());
+      return names.size() - 1;
+   }
+
+   int size() {
+      return names.size();
+   }
+
+   /**
+    * Display names of the mappings, {@code source -> destination}, indexed by ordinal.
+    */
+   List<String> getNames() {
+      return Collections.unmodifiableList(names);
+   }
+}
@@ -0,0 +1,211 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+import com.google.common.hash.Hashing;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.riversand.connectors.extension.helpers.TransformerHelper;
+import com.riversand.rsconnect.common.config.FieldMapping;
+import com.riversand.rsconnect.common.helpers.ConnectRuntimeException;
+
+/**
+ * Cache of parsed mapping configs, keyed by tenant and config id.
+ * <p>
+ * A cached config is used without contacting the config service until its time to live expires. The config is
+ * then fetched again, and it is only parsed again when its version changed: the {@code properties.modifiedDate} of
+ * the config, or a hash of its content when the config has no modified date. Configs not used for several times
+ * the time to live are evicted.
+ */
+final class MappingConfigCache {
+   static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+   static final String MAPPINGS_PATH = "jsonData.mappings";
+   static final String RELATIONSHIP_MAPPINGS_PATH = "jsonData.relationshipMappings";
+   private static final String PROPERTIES = "properties";
+   private static final String MODIFIED_DATE = "modifiedDate";
+   // Unused entries are evicted after this many time to live periods.
+   private static final int IDLE_PERIODS = 4;
+
+   private static final MappingConfigCache INSTANCE = new MappingConfigCache(
+         (tenantId, configId) -> TransformerHelper.getConfigDataObject(tenantId, configId, "mappings", null),
+         System::currentTimeMillis);
+
+   /**
+    * Loads the data object of a mapping config from the config service.
+    */
+   interface ConfigLoader {
+      JsonObject load(String tenantId, String configId) throws Exception;
+   }
+
+   private final ConfigLoader loader;
+   private final LongSupplier clock;
+   private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+   private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+   MappingConfigCache(ConfigLoader loader, LongSupplier clock) {
+      this.loader = loader;
+      this.clock = clock;
+   }
+
+   static MappingConfigCache getInstance() {
+      return INSTANCE;
+   }
+
+   /**
+    * Get the mappings of a config, loading or refreshing it when needed.
+    *
+    * @param tenantId   - tenant of the config
+    * @param configId   - id of the mapping config
+    * @param ttlMillis  - time a loaded config is used without checking its version, 0 to check on every call
+    * @return parsed mappings
+    * @throws Exception when the config can not be loaded
+    */
+   MappingConfig get(String tenantId, String configId, long ttlMillis) throws Exception {
+      String key = tenantId + "/" + configId;
+      long now = clock.getAsLong();
+      Entry entry = entries.get(key);
+      if (entry != null && now - entry.loadedAt < ttlMillis) {
+         entry.lastAccess = now;
+         return entry.config;
+      }
+      synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+         entry = entries.get(key);
+         if (entry != null && now - entry.loadedAt < ttlMillis) {
+            entry.lastAccess = now;
+            return entry.config;
+         }
+         JsonObject dataObject = loader.load(tenantId, configId);
+         if (dataObject == null) {
+            throw new ConnectRuntimeException("RSC7820", "Mappings config " + configId + " not found.");
+         }
+         String version = getVersion(dataObject);
+         MappingConfig config;
+         if (entry != null && entry.config.getVersion().equals(version)) {
+            config = entry.config;
+         } else {
+            config = new MappingConfig(version, TransformerHelper.getFieldMappings(dataObject, MAPPINGS_PATH),
+                  TransformerHelper.getFieldMappings(dataObject, RELATIONSHIP_MAPPINGS_PATH));
+         }
+         entries.put(key, new Entry(config, now));
+         evictIdle(now, ttlMillis);
+         return config;
+      }
+   }
+
+   /**
+    * Drop a config, so it is loaded again on the next call.
+    *
+    * @param tenantId - tenant of the config
+    * @param configId - id of the mapping config
+    */
+   void invalidate(String tenantId, String configId) {
+      String key = tenantId + "/" + configId;
+      entries.remove(key);
+      locks.remove(key);
+   }
+
+   // A load running while its lock is removed only lets a concurrent load of the same config through.
+   private void evictIdle(long now, long ttlMillis) {
+      long idleMillis = Math.max(ttlMillis, DEFAULT_TTL_MILLIS) * IDLE_PERIODS;
+      entries.entrySet().removeIf(entry -> {
+         if (now - entry.getValue().lastAccess > idleMillis) {
+            locks.remove(entry.getKey());
+            return true;
+         }
+         return false;
+      });
+   }
+
+   int size() {
+      return entries.size();
+   }
+
+   int lockCount() {
+      return locks.size();
+   }
+
+   private static String getVersion(JsonObject dataObject) {
+      JsonElement properties = dataObject.get(PROPERTIES);
+      if (properties != null && properties.isJsonObject()) {
+         JsonElement modifiedDate = properties.getAsJsonObject().get(MODIFIED_DATE);
+         if (modifiedDate != null && modifiedDate.isJsonPrimitive()) {
+            return modifiedDate.getAsString();
+         }
+      }
+      return Hashing.sha256().hashString(dataObject.toString(), StandardCharsets.UTF_8).toString();
+   }
+
+   private static final class Entry {
+      private final MappingConfig config;
+      private final long loadedAt;
+      private volatile long lastAccess;
+
+      private Entry(MappingConfig config, long loadedAt) {
+         this.config = config;
+         this.loadedAt = loadedAt;
+         this.lastAccess = loadedAt;
+      }
+   }
+
+   /**
+    * One version of a parsed mapping config. The mappings are validated once, when the version is parsed, and only
+    * the valid ones are kept. The lists are immutable, and {@link FieldMapGenerator} hands out copies of the mappings,
+    * so a job can not change them for the other jobs using the config.
+    */
+   static final class MappingConfig {
+      private final String version;
+      private final List<FieldMapping> fieldMappings;
+      private final List<FieldMapping> relationshipMappings;
+      private final MappingValidator.Report report;
+      private final AtomicBoolean reported = new AtomicBoolean();
+
+      private MappingConfig(String version, List<FieldMapping> fieldMappings, List<FieldMapping> relationshipMappings) {
+         this.version = version;
+         this.report = MappingValidator.validate(fieldMappings, relationshipMappings);
+         this.fieldMappings = immutable(report.getFieldMappings());
+         this.relationshipMappings = immutable(report.getRelationshipMappings());
+         MappingValidator.markValidated(this.fieldMappings);
+         MappingValidator.markValidated(this.relationshipMappings);
+      }
+
+      private static List<FieldMapping> immutable(List<FieldMapping> mappings) {
+         return mappings == null ? Collections.emptyList() : Collections.unmodifiableList(mappings);
+      }
+
+      String getVersion() {
+         return version;
+      }
+
+      List<FieldMapping> getFieldMappings() {
+         return fieldMappings;
+      }
+
+      List<FieldMapping> getRelationshipMappings() {
+         return relationshipMappings;
+      }
+
+      /**
+       * Report of the validation of this version.
+       */
+      MappingValidator.Report getReport() {
+         return report;
+      }
+
+      /**
+       * Mark the quarantined mappings of this version as reported.
+       *
+       * @return true for the first call only
+       */
+      boolean markReported() {
+         return reported.compareAndSet(false, true);
+      }
+   }
+}
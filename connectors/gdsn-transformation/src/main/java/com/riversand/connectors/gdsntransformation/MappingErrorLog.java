@@ -0,0 +1,46 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManager;
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManagerLogger;
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+
+/**
+ * Sampled log of mapping failures. A mapping failing for a record usually fails for many records of a batch, so
+ * only its first failure and then one failure in every interval are logged, with the number of failures so far.
+ * Every failure is still counted by {@link TransformMetrics} and, when requested, recorded in
+ * {@link TransformErrors}.
+ */
+final class MappingErrorLog {
+   static final int DEFAULT_INTERVAL = 1000;
+
+   private final ProfilerManagerLogger pmLogger = ProfilerManager.getLogger(MappingErrorLog.class);
+   private final AtomicLongArray counts;
+   private final int interval;
+
+   /**
+    * @param catalog  - mappings of the transformer
+    * @param interval - number of failures of a mapping between two logged ones
+    */
+   MappingErrorLog(MappingCatalog catalog, int interval) {
+      this.counts = new AtomicLongArray(catalog.size());
+      this.interval = interval;
+   }
+
+   /**
+    * Count a failure of a mapping, and log it when sampled.
+    *
+    * @param mapping    - failed mapping
+    * @param contextKey - context the mapping was applied in, null for the entity data
+    * @param reason     - why the mapping failed
+    */
+   void log(CompiledFieldMapping mapping, String contextKey, String reason) {
+      long count = counts.incrementAndGet(mapping.getOrdinal());
+      if (count == 1 || count % interval == 0) {
+         pmLogger.error(Constants.RSCONNECT_SERVICE, "RSC7273", "Failed to apply mapping " + mapping.getFieldMapping().getId() + " "
+               + mapping.getSource() + " -> " + mapping.getDestination() + (contextKey == null ? "" : " in context " + contextKey)
+               + " (" + count + (count == 1 ? " failure): " : " failures): ") + reason);
+      }
+   }
+}
@@ -0,0 +1,68 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.collections.CollectionUtils;
+
+import com.riversand.rsconnect.common.config.FieldMapping;
+
+/**
+ * Immutable transformation plan: the enabled field mappings of a transform profile, compiled and grouped by
+ * entity type. The plan is built once per transformer and shared by every record it transforms.
+ */
+final class MappingPlan {
+   private final Map<String, List<CompiledFieldMapping>> mappingsByEntityType;
+
+   private MappingPlan(Map<String, List<CompiledFieldMapping>> mappingsByEntityType) {
+      this.mappingsByEntityType = mappingsByEntityType;
+   }
+
+   /**
+    * Compile the field map into a plan. Disabled mappings and mappings without entity type are never applied by the
+    * transformer and are left out of the plan.
+    *
+    * @param fieldMap - field mappings from the transform config
+    * @param catalog  - assigns the mapping ordinals
+    * @return compiled plan
+    */
+   static MappingPlan compile(List<FieldMapping> fieldMap, MappingCatalog catalog) {
+      Map<String, List<CompiledFieldMapping>> grouped = new HashMap<>();
+      if (CollectionUtils.isNotEmpty(fieldMap)) {
+         for (FieldMapping fieldMapping : fieldMap) {
+            if (!fieldMapping.isEnabled() || fieldMapping.getEntityType() == null) {
+               continue;
+            }
+            grouped.computeIfAbsent(fieldMapping.getEntityType(), entityType -> new ArrayList<>())
+                  .add(CompiledFieldMapping.compile(fieldMapping, catalog));
+         }
+      }
+      Map<String, List<CompiledFieldMapping>> mappingsByEntityType = new HashMap<>(grouped.size());
+      for (Map.Entry<String, List<CompiledFieldMapping>> entry : grouped.entrySet()) {
+         mappingsByEntityType.put(entry.getKey(), Collections.unmodifiableList(entry.getValue()));
+      }
+      return new MappingPlan(Collections.unmodifiableMap(mappingsByEntityType));
+   }
+
+   /**
+    * Get the mappings to apply to records of the given entity type, in configuration order.
+    *
+    * @param entityType - entity type of the record
+    * @return compiled mappings, empty when nothing is mapped for the entity type
+    */
+   List<CompiledFieldMapping> getMappings(String entityType) {
+      List<CompiledFieldMapping> mappings = mappingsByEntityType.get(entityType);
+      return mappings == null ? Collections.emptyList() : mappings;
+   }
+
+   /**
+    * Get the mappings of every entity type in the plan.
+    */
+   Collection<List<CompiledFieldMapping>> getAllMappings() {
+      return mappingsByEntityType.values();
+   }
+}
@@ -0,0 +1,260 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.apache.commons.collections.CollectionUtils;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.collect.MapMaker;
+
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManager;
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManagerLogger;
+import com.riversand.rsconnect.common.config.FieldMapping;
+import com.riversand.rsconnect.common.config.TransformConfig;
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+import com.riversand.rsconnect.common.transform.FieldMapMacro;
+
+/**
+ * Load time validation of the mappings of a profile. A malformed mapping fails the same way for every record it is
+ * applied to, so it is looked for once, before any record is transformed: it is quarantined, that is reported and
+ * left out of the mappings handed to the transformer, or the whole profile is rejected when the
+ * {@value #VALIDATION_SETTING} transform setting is {@value #STRICT}. A mapping is malformed when:
+ * <ul>
+ * <li>its source or destination is missing,</li>
+ * <li>a macro of its source or destination is not closed, or its parentheses are unbalanced,</li>
+ * <li>its destination holds fields separated by {@code #@#} while it is neither a UOM nor a reference data mapping,
+ * or more than two fields,</li>
+ * <li>its destination has more {@code %d} placeholders than the indices set at its nesting level.</li>
+ * </ul>
+ * A nested mapping is quarantined with all its children when one of them is malformed. Only the mappings the
+ * transformer applies are checked: disabled entity mappings and mappings without entity type are kept as they are.
+ * <p>
+ * The mappings of a mapping config are validated once per config version, see {@link MappingConfigCache}. The valid
+ * ones are marked as validated and are not checked again when the transformer compiles the profile holding them.
+ */
+final class MappingValidator {
+   static final String VALIDATION_SETTING = "mappingValidation";
+   static final String STRICT = "strict";
+
+   private static final ProfilerManagerLogger pmLogger = ProfilerManager.getLogger(MappingValidator.class);
+   // Mappings known to be valid, by identity.
+   private static final Set<FieldMapping> VALIDATED = Collections.newSetFromMap(new MapMaker().weakKeys().makeMap());
+
+   private MappingValidator() {
+   }
+
+   /**
+    * Validate the mappings of a profile, rejecting them in strict mode and logging the quarantined mappings
+    * otherwise.
+    *
+    * @param config               - transform config holding the {@value #VALIDATION_SETTING} setting
+    * @param fieldMap             - entity mappings
+    * @param relationshipFieldMap - relationship mappings
+    * @return report holding the valid mappings
+    */
+   static Report check(TransformConfig config, List<FieldMapping> fieldMap, List<FieldMapping> relationshipFieldMap) {
+      return check(config, validate(fieldMap, relationshipFieldMap), () -> true);
+   }
+
+   /**
+    * Apply a validation report to a profile, rejecting it in strict mode and logging the quarantined mappings
+    * otherwise.
+    *
+    * @param config     - transform config holding the {@value #VALIDATION_SETTING} setting
+    * @param report     - report of the mappings of the profile
+    * @param unreported - whether the quarantined mappings still need to be logged, only asked when they are
+    * @return the report
+    */
+   static Report check(TransformConfig config, Report report, BooleanSupplier unreported) {
+      if (report.isValid()) {
+         return report;
+      }
+      if (STRICT.equalsIgnoreCase(Strings.nullToEmpty(config.getSettings().getAdditionalSetting(VALIDATION_SETTING)).trim())) {
+         throw new ConnectIllegalArgumentException("RSC7820", "Invalid mappings: " + report);
+      }
+      if (unreported.getAsBoolean()) {
+         for (String violation : report.getViolations()) {
+            pmLogger.error(Constants.RSCONNECT_SERVICE, "RSC7273", "Quarantined " + violation);
+         }
+      }
+      return report;
+   }
+
+   /**
+    * Validate the mappings of a profile.
+    *
+    * @param fieldMap             - entity mappings
+    * @param relationshipFieldMap - relationship mappings
+    * @return report holding the valid mappings
+    */
+   static Report validate(List<FieldMapping> fieldMap, List<FieldMapping> relationshipFieldMap) {
+      List<String> violations = new ArrayList<>();
+      List<FieldMapping> validFieldMap = validate(fieldMap, false, violations);
+      List<FieldMapping> validRelationshipFieldMap = validate(relationshipFieldMap, true, violations);
+      return new Report(validFieldMap, validRelationshipFieldMap, violations);
+   }
+
+   /**
+    * Mark mappings as valid, so they are not validated again.
+    */
+   static void markValidated(Collection<FieldMapping> mappings) {
+      VALIDATED.addAll(mappings);
+   }
+
+   static boolean isValidated(FieldMapping mapping) {
+      return VALIDATED.contains(mapping);
+   }
+
+   /**
+    * Validate a list of mappings.
+    *
+    * @return the valid mappings, the given list itself when all of them are valid
+    */
+   private static List<FieldMapping> validate(List<FieldMapping> mappings, boolean relationship, List<String> violations) {
+      if (CollectionUtils.isEmpty(mappings)) {
+         return mappings;
+      }
+      List<FieldMapping> valid = new ArrayList<>(mappings.size());
+      for (FieldMapping mapping : mappings) {
+         // Relationship mappings are applied whether enabled or not.
+         String violation = mapping.getEntityType() == null || (!relationship && !mapping.isEnabled()) || VALIDATED.contains(mapping) ? null
+               : relationship ? getViolation(mapping, 1) : getTopLevelViolation(mapping);
+         if (violation == null) {
+            valid.add(mapping);
+         } else {
+            violations.add(describe(mapping) + ": " + violation);
+         }
+      }
+      return valid.size() == mappings.size() ? mappings : valid;
+   }
+
+   /**
+    * Check an entity mapping, and the children of a nested mapping at the depth of their group level.
+    */
+   private static String getTopLevelViolation(FieldMapping mapping) {
+      if (!CompiledFieldMapping.isNestedType(mapping.getType())) {
+         return getViolation(mapping, 0);
+      }
+      if (CollectionUtils.isEmpty(mapping.getChildFieldMappings())) {
+         return null;
+      }
+      for (FieldMapping child : mapping.getChildFieldMappings()) {
+         if (!GDSNFieldMapMacro.isBalanced(child.getSource())) {
+            return "child " + describe(child) + ": unbalanced parentheses in source";
+         }
+         String attributeName = FieldMapMacro.isAttribute(child.getSource()) ? FieldMapMacro.getAttribute(child.getSource()) : null;
+         SourcePath sourcePath = SourcePath.compile(attributeName);
+         String[] groupPath = sourcePath == null ? null : sourcePath.getGroupPath();
+         if (groupPath == null) {
+            // Not matched to a group, never applied.
+            continue;
+         }
+         String violation = getViolation(child, groupPath.length - 1);
+         if (violation != null) {
+            return "child " + describe(child) + ": " + violation;
+         }
+      }
+      return null;
+   }
+
+   /**
+    * Check a mapping applied on its own.
+    *
+    * @param mapping - mapping
+    * @param depth   - number of parent indices set when the mapping is written: 0 for entity mappings, 1 for
+    *                relationship mappings, the group level of nested children
+    * @return what is wrong with the mapping, null when it is valid
+    */
+   private static String getViolation(FieldMapping mapping, int depth) {
+      String source = mapping.getSource();
+      if (Strings.isNullOrEmpty(source)) {
+         return "source is missing";
+      }
+      if (!GDSNFieldMapMacro.isBalanced(source)) {
+         return "unbalanced parentheses in source";
+      }
+      String destination = mapping.getDestination();
+      if (Strings.isNullOrEmpty(destination)) {
+         return "destination is missing";
+      }
+      if (!GDSNFieldMapMacro.isBalanced(destination)) {
+         return "unbalanced parentheses in destination";
+      }
+      boolean localizable = mapping.isLocalizable();
+      DestinationTemplate[] fields;
+      if (CompiledFieldMapping.REFERENCE_TYPE_DATA.equalsIgnoreCase(mapping.getType()) || (!localizable && mapping.hasUOM())) {
+         fields = DestinationTemplate.compileFields(destination);
+         if (fields.length > 2) {
+            return "more than two " + CompiledFieldMapping.DESTINATION_SEPARATOR + " separated destination fields";
+         }
+      } else if (destination.contains(CompiledFieldMapping.DESTINATION_SEPARATOR)) {
+         return CompiledFieldMapping.DESTINATION_SEPARATOR + " separated destination on a mapping that is neither UOM nor reference data";
+      } else {
+         fields = new DestinationTemplate[]{DestinationTemplate.compile(destination)};
+      }
+      // Mirrors TransformSession.setIndices.
+      int indexCount = depth == 0 ? 1 : depth + (mapping.isCollectionType() || localizable ? 1 : 0);
+      for (DestinationTemplate field : fields) {
+         if (field.getSlotCount() > indexCount) {
+            return field.getSlotCount() + " %d placeholders in destination, only " + indexCount + " set";
+         }
+      }
+      return null;
+   }
+
+   private static String describe(FieldMapping mapping) {
+      return "mapping " + mapping.getEntityType() + " " + mapping.getSource() + " -> " + mapping.getDestination();
+   }
+
+   /**
+    * Outcome of a validation: the valid mappings and what is wrong with the others.
+    */
+   static final class Report {
+      private final List<FieldMapping> fieldMappings;
+      private final List<FieldMapping> relationshipMappings;
+      private final List<String> violations;
+
+      private Report(List<FieldMapping> fieldMappings, List<FieldMapping> relationshipMappings, List<String> violations) {
+         this.fieldMappings = fieldMappings;
+         this.relationshipMappings = relationshipMappings;
+         this.violations = Collections.unmodifiableList(violations);
+      }
+
+      /**
+       * Valid entity mappings, in configuration order. The validated list itself when nothing is quarantined.
+       */
+      List<FieldMapping> getFieldMappings() {
+         return fieldMappings;
+      }
+
+      /**
+       * Valid relationship mappings, in configuration order. The validated list itself when nothing is quarantined.
+       */
+      List<FieldMapping> getRelationshipMappings() {
+         return relationshipMappings;
+      }
+
+      /**
+       * One entry per quarantined mapping, naming the mapping and what is wrong with it.
+       */
+      List<String> getViolations() {
+         return violations;
+      }
+
+      boolean isValid() {
+         return violations.isEmpty();
+      }
+
+      @Override
+      public String toString() {
+         return Joiner.on("; ").join(violations);
+      }
+   }
+}
@@ -0,0 +1,166 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+
+/**
+ * Child mappings of a nested ({@code oneToTwoLevel}, {@code oneToThreeLevel}) mapping arranged as a tree of group
+ * levels. A source such as {@code parent.group[%d].inner.group[%d].child} is a leaf {@code child} under the node
+ * {@code inner} under the root {@code parent}. Traversing the tree visits every group of the record once and hands
+ * each attribute found to all the child mappings reading it, instead of walking the groups again for every child.
+ */
+final class NestedGroupPlan {
+   private static final NestedGroupPlan EMPTY = new NestedGroupPlan(Collections.emptyMap(), 0);
+
+   /**
+    * Receives the attributes found by {@link #traverse}.
+    */
+   interface GroupVisitor {
+      /**
+       * Visit the attribute read by a child mapping.
+       *
+       * @param mapping       - child mapping
+       * @param attribute     - attribute object within the group
+       * @param parentIndices - index of the group at every level, only valid during the call
+       * @param depth         - number of levels in parentIndices
+       */
+      void visit(CompiledFieldMapping mapping, JsonObject attribute, int[] parentIndices, int depth);
+   }
+
+   private final Map<String, Node> roots;
+   private final int depth;
+
+   private NestedGroupPlan(Map<String, Node> roots, int depth) {
+      this.roots = roots;
+      this.depth = depth;
+   }
+
+   /**
+    * Arrange child mappings into group levels. Children whose source is not a path of group levels only can not be
+    * matched to a group and are left out.
+    *
+    * @param children - compiled child mappings, in configuration order
+    * @return plan
+    */
+   static NestedGroupPlan compile(List<CompiledFieldMapping> children) {
+      Map<String, NodeBuilder> roots = new LinkedHashMap<>();
+      int depth = 0;
+      for (CompiledFieldMapping child : children) {
+         String[] groupPath = child.getSourcePath() == null ? null : child.getSourcePath().getGroupPath();
+         if (groupPath == null) {
+            continue;
+         }
+         NodeBuilder node = roots.computeIfAbsent(groupPath[0], name -> new NodeBuilder());
+         for (int level = 1; level < groupPath.length - 1; level++) {
+            node = node.nodes.computeIfAbsent(groupPath[level], name -> new NodeBuilder());
+         }
+         node.leafNames.add(groupPath[groupPath.length - 1]);
+         node.leafMappings.add(child);
+         depth = Math.max(depth, groupPath.length - 1);
+      }
+      if (roots.isEmpty()) {
+         return EMPTY;
+      }
+      Map<String, Node> compiledRoots = new LinkedHashMap<>();
+      for (Map.Entry<String, NodeBuilder> entry : roots.entrySet()) {
+         compiledRoots.put(entry.getKey(), entry.getValue().build());
+      }
+      return new NestedGroupPlan(Collections.unmodifiableMap(compiledRoots), depth);
+   }
+
+   /**
+    * Top level attributes read by the child mappings.
+    */
+   Set<String> getRootNames() {
+      return roots.keySet();
+   }
+
+   /**
+    * Visit the attributes read by the child mappings in the given attributes object, group by group. Within a group
+    * the children are visited in configuration order, before the groups of the next level.
+    *
+    * @param attributes - attributes object of the entity or of one of its contexts
+    * @param visitor    - receives every attribute found
+    */
+   void traverse(JsonObject attributes, GroupVisitor visitor) {
+      if (attributes == null || roots.isEmpty()) {
+         return;
+      }
+      int[] parentIndices = new int[depth];
+      for (Map.Entry<String, Node> root : roots.entrySet()) {
+         JsonElement attribute = attributes.get(root.getKey());
+         if (attribute != null && attribute.isJsonObject()) {
+            root.getValue().traverse(attribute.getAsJsonObject(), parentIndices, 0, visitor);
+         }
+      }
+   }
+
+   private static final class Node {
+      private final String[] leafNames;
+      private final CompiledFieldMapping[] leafMappings;
+      private final String[] nodeNames;
+      private final Node[] nodes;
+
+      private Node(String[] leafNames, CompiledFieldMapping[] leafMappings, String[] nodeNames, Node[] nodes) {
+         this.leafNames = leafNames;
+         this.leafMappings = leafMappings;
+         this.nodeNames = nodeNames;
+         this.nodes = nodes;
+      }
+
+      private void traverse(JsonObject parent, int[] parentIndices, int level, GroupVisitor visitor) {
+         JsonElement groups = parent.get(Constants.NESTED_ATTRIBUTES_GROUP);
+         if (groups == null || !groups.isJsonArray()) {
+            return;
+         }
+         JsonArray groupArray = groups.getAsJsonArray();
+         for (int index = 0; index < groupArray.size(); index++) {
+            JsonElement group = groupArray.get(index);
+            if (!group.isJsonObject()) {
+               continue;
+            }
+            JsonObject groupObject = group.getAsJsonObject();
+            parentIndices[level] = index;
+            for (int i = 0; i < leafMappings.length; i++) {
+               JsonElement attribute = groupObject.get(leafNames[i]);
+               if (attribute != null && attribute.isJsonObject()) {
+                  visitor.visit(leafMappings[i], attribute.getAsJsonObject(), parentIndices, level + 1);
+               }
+            }
+            for (int i = 0; i < nodes.length; i++) {
+               JsonElement attribute = groupObject.get(nodeNames[i]);
+               if (attribute != null && attribute.isJsonObject()) {
+                  nodes[i].traverse(attribute.getAsJsonObject(), parentIndices, level + 1, visitor);
+               }
+            }
+         }
+      }
+   }
+
+   private static final class NodeBuilder {
+      private final List<String> leafNames = new ArrayList<>();
+      private final List<CompiledFieldMapping> leafMappings = new ArrayList<>();
+      private final Map<String, NodeBuilder> nodes = new LinkedHashMap<>();
+
+      private Node build() {
+         String[] nodeNames = new String[nodes.size()];
+         Node[] compiledNodes = new Node[nodes.size()];
+         int i = 0;
+         for (Map.Entry<String, NodeBuilder> entry : nodes.entrySet()) {
+            nodeNames[i] = entry.getKey();
+            compiledNodes[i++] = entry.getValue().build();
+         }
+         return new Node(leafNames.toArray(new String[0]), leafMappings.toArray(new CompiledFieldMapping[0]), nodeNames, compiledNodes);
+      }
+   }
+}
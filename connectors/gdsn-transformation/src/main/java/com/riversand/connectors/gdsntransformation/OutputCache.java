@@ -0,0 +1,107 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.common.hash.HashCode;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+
+/**
+ * Outputs of transformed entities keyed by the content of the inbound entity, for publications sending the same
+ * entity many times (once per target market or recipient). The key is a hash of the inbound object, regardless of
+ * the order of its members, seeded with the version of the mapping plan, so a repeated entity is served with a
+ * hash and a lookup instead of being transformed again.
+ * <p>
+ * The cache is bounded by the number of outputs and by their total weight, the length of their JSON; the least
+ * recently used outputs are evicted first. An output is cached as its JSON, written once: the snapshot can not be
+ * changed by the caller that put it, is shared by the readers without copying, and takes a fraction of the memory
+ * of the tree. Every get parses a new tree, so every caller gets an output it is free to modify.
+ */
+final class OutputCache {
+   private static final Gson gson = GsonBuilder.getGsonInstance();
+
+   private final String planVersion;
+   private final int maxEntries;
+   private final long maxWeight;
+   private final Map<HashCode, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+   private long weight;
+
+   /**
+    * @param planVersion - version of the mappings the outputs are computed with
+    * @param maxEntries  - number of outputs kept
+    * @param maxWeight   - total weight of the outputs kept
+    */
+   OutputCache(String planVersion, int maxEntries, long maxWeight) {
+      this.planVersion = planVersion;
+      this.maxEntries = maxEntries;
+      this.maxWeight = maxWeight;
+   }
+
+   /**
+    * Get the key of an inbound entity.
+    */
+   HashCode getKey(JsonObject inboundObject) {
+      return Fingerprints.ofContent(planVersion, inboundObject);
+   }
+
+   /**
+    * Get the cached output of an entity, parsed from its snapshot.
+    *
+    * @param key - key of the inbound entity
+    * @return output, null when not cached
+    */
+   JsonObject get(HashCode key) {
+      Entry entry;
+      synchronized (this) {
+         entry = entries.get(key);
+      }
+      return entry == null ? null : gson.fromJson(entry.json, JsonObject.class);
+   }
+
+   /**
+    * Cache a snapshot of the output of an entity. An output heavier than the whole cache is not cached.
+    *
+    * @param key      - key of the inbound entity
+    * @param document - output
+    */
+   void put(HashCode key, JsonObject document) {
+      // JsonElement.toString keeps null members, unlike Gson.toJson.
+      String json = document.toString();
+      long documentWeight = json.length();
+      if (documentWeight > maxWeight) {
+         return;
+      }
+      Entry entry = new Entry(json, documentWeight);
+      synchronized (this) {
+         Entry previous = entries.put(key, entry);
+         weight += documentWeight - (previous == null ? 0 : previous.weight);
+         Iterator<Entry> eldest = entries.values().iterator();
+         while (entries.size() > maxEntries || weight > maxWeight) {
+            weight -= eldest.next().weight;
+            eldest.remove();
+         }
+      }
+   }
+
+   synchronized int size() {
+      return entries.size();
+   }
+
+   synchronized long getWeight() {
+      return weight;
+   }
+
+   private static final class Entry {
+      private final String json;
+      private final long weight;
+
+      private Entry(String json, long weight) {
+         this.json = json;
+         this.weight = weight;
+      }
+   }
+}
@@ -0,0 +1,178 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Builder of the outbound document. Values are written at compiled destination templates: the segments of the path
+ * are walked on the document directly, and for each template the nodes created by its last write are kept, so the
+ * next value of the same destination starts from the deepest node it shares with the previous one instead of
+ * rendering the path and walking it from the root again.
+ * <p>
+ * The document is the same as the one built with {@link JsonRecord#setValue}: arrays are padded up to the written
+ * index, and values are converted by {@link JsonRecord} itself. Paths that are not plain dotted paths, and writes by
+ * rendered path, go through {@link JsonRecord#setValue}.
+ * <p>
+ * Owned by a single transformation, not thread safe.
+ */
+final class OutputDocument {
+   private static final String VALUE = "value";
+
+   private final JsonRecord record;
+   private final JsonObject root;
+   private final JsonRecord scratch = new JsonRecord();
+   private final StringBuilder pathBuilder = new StringBuilder(128);
+   private final Map<DestinationTemplate, Cursor> cursors = new IdentityHashMap<>();
+   // Changed whenever an object or array of the document may have been replaced, which invalidates every cursor.
+   private int version;
+
+   OutputDocument() {
+      this(new JsonRecord());
+   }
+
+   OutputDocument(JsonRecord record) {
+      this.record = record;
+      this.root = record.getJsonObject();
+   }
+
+   JsonRecord getRecord() {
+      return record;
+   }
+
+   /**
+    * Write a value at a destination.
+    *
+    * @param template - compiled destination
+    * @param indices  - index values, in placeholder order
+    * @param count    - number of valid entries in indices
+    * @param value    - value to write
+    * @param type     - type of the value
+    */
+   void setValue(DestinationTemplate template, int[] indices, int count, String value, String type) {
+      template.checkIndices(count);
+      JsonElement element = value == null ? null : convert(value, type);
+      if (!template.isSegmented() || element == null) {
+         setValue(template.render(pathBuilder, indices, count), value, type);
+         return;
+      }
+      Cursor cursor = cursors.get(template);
+      if (cursor == null) {
+         cursor = new Cursor(root, template.getSegmentCount());
+         cursors.put(template, cursor);
+      }
+      int last = template.getSegmentCount() - 1;
+      // Skip the segments leading to the same nodes as the previous write.
+      int segment = 0;
+      if (cursor.version == version) {
+         while (segment < last && cursor.indices[segment] == template.getSegmentIndex(segment, indices)) {
+            segment++;
+         }
+      }
+      for (; segment < last; segment++) {
+         int index = template.getSegmentIndex(segment, indices);
+         cursor.indices[segment] = index;
+         cursor.parents[segment + 1] = getObject(cursor.parents[segment], template.getSegmentName(segment), index);
+      }
+      set(cursor.parents[last], template.getSegmentName(last), template.getSegmentIndex(last, indices), element);
+      cursor.version = version;
+   }
+
+   /**
+    * Write a value at a rendered path.
+    *
+    * @param path  - destination path
+    * @param value - value to write
+    * @param type  - type of the value
+    */
+   void setValue(String path, String value, String type) {
+      record.setValue(path, value, type, true);
+      version++;
+   }
+
+   /**
+    * Convert a value as {@link JsonRecord} does, by writing it to a single segment path.
+    *
+    * @return converted value, null when {@link JsonRecord} does not write it
+    */
+   private JsonElement convert(String value, String type) {
+      scratch.setValue(VALUE, value, type, true);
+      return scratch.getJsonObject().remove(VALUE);
+   }
+
+   private JsonObject getObject(JsonObject parent, String name, int index) {
+      JsonElement node;
+      if (index < 0) {
+         node = parent.get(name);
+         if (node == null || !node.isJsonObject()) {
+            replaced(node);
+            node = new JsonObject();
+            parent.add(name, node);
+         }
+      } else {
+         JsonArray array = getArray(parent, name);
+         while (array.size() <= index) {
+            array.add(new JsonObject());
+         }
+         node = array.get(index);
+         if (!node.isJsonObject()) {
+            replaced(node);
+            node = new JsonObject();
+            array.set(index, node);
+         }
+      }
+      return node.getAsJsonObject();
+   }
+
+   private void set(JsonObject parent, String name, int index, JsonElement element) {
+      if (index < 0) {
+         replaced(parent.get(name));
+         parent.add(name, element);
+      } else {
+         JsonArray array = getArray(parent, name);
+         while (array.size() <= index) {
+            array.add(JsonNull.INSTANCE);
+         }
+         replaced(array.get(index));
+         array.set(index, element);
+      }
+   }
+
+   private JsonArray getArray(JsonObject parent, String name) {
+      JsonElement array = parent.get(name);
+      if (array == null || !array.isJsonArray()) {
+         replaced(array);
+         array = new JsonArray();
+         parent.add(name, array);
+      }
+      return array.getAsJsonArray();
+   }
+
+   private void replaced(JsonElement node) {
+      if (node != null && (node.isJsonObject() || node.isJsonArray())) {
+         version++;
+      }
+   }
+
+   /**
+    * Nodes created by the last write of a template: the parent object of each segment and the array index the
+    * segment resolved to.
+    */
+   private static final class Cursor {
+      private final JsonObject[] parents;
+      private final int[] indices;
+      private int version = -1;
+
+      Cursor(JsonObject root, int segments) {
+         parents = new JsonObject[segments];
+         parents[0] = root;
+         indices = new int[segments];
+      }
+   }
+}
@@ -0,0 +1,53 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The output one mapping (or the relationship mappings of one context) wrote for an entity, with the fingerprint
+ * of the source it was computed from. Replaying the writes reproduces the output without reading the source again.
+ */
+final class OutputFragment {
+   private final boolean fingerprinted;
+   private final long fingerprint;
+   // Destination path, value and type of every write, in write order.
+   private final String[] writes;
+
+   OutputFragment(boolean fingerprinted, long fingerprint, String[] writes) {
+      this.fingerprinted = fingerprinted;
+      this.fingerprint = fingerprint;
+      this.writes = writes;
+   }
+
+   /**
+    * Check whether the fragment was computed from a source with the given fingerprint.
+    */
+   boolean matches(boolean fingerprinted, long fingerprint) {
+      return this.fingerprinted && fingerprinted && this.fingerprint == fingerprint;
+   }
+
+   boolean isEmpty() {
+      return writes.length == 0;
+   }
+
+   boolean hasSameOutput(OutputFragment other) {
+      return other != null && Arrays.equals(writes, other.writes);
+   }
+
+   /**
+    * Write the output of the fragment again.
+    *
+    * @param output - outbound document
+    */
+   void replay(OutputDocument output) {
+      for (int i = 0; i < writes.length; i += 3) {
+         output.setValue(writes[i], writes[i + 1], writes[i + 2]);
+      }
+   }
+
+   void addPathsTo(Collection<String> paths) {
+      for (int i = 0; i < writes.length; i += 3) {
+         paths.add(writes[i]);
+      }
+   }
+}
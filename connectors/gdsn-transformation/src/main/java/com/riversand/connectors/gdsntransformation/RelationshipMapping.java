@@ -0,0 +1,131 @@
+package com.riversand.connectors.gdsntransformation;
+
+import com.google.common.base.Strings;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+import com.riversand.rsconnect.common.transform.FieldMapMacro;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Relationship mapping with its source macro parsed once. {@code @attr(...)} and {@code @relAttr(...)} read an
+ * attribute of the relationship, {@code @relToAttr(...)} an attribute of the related entity, and any other source
+ * is a path within the relationship object.
+ */
+final class RelationshipMapping {
+   private static final String ATTRIBUTES = "attributes";
+   private static final String REL_TO = "relTo";
+   private static final String DATA = "data";
+
+   private enum Kind {
+      ATTRIBUTE,
+      REL_TO_ATTRIBUTE,
+      PATH
+   }
+
+   private final CompiledFieldMapping mapping;
+   private final Kind kind;
+   private final String relationshipName;
+   private final SourcePath attributePath;
+   private final String path;
+
+   private RelationshipMapping(CompiledFieldMapping mapping, Kind kind, String relationshipName, SourcePath attributePath, String path) {
+      this.mapping = mapping;
+      this.kind = kind;
+      this.relationshipName = relationshipName;
+      this.attributePath = attributePath;
+      this.path = path;
+   }
+
+   /**
+    * Compile a relationship mapping.
+    *
+    * @param mapping - compiled field mapping
+    * @return relationship mapping
+    */
+   static RelationshipMapping compile(CompiledFieldMapping mapping) {
+      String field = mapping.getSource();
+      if (Strings.isNullOrEmpty(field)) {
+         // Quarantined by MappingValidator before the plan is compiled.
+         throw new ConnectIllegalArgumentException("RSC7820", "source cannot be empty");
+      }
+      if (FieldMapMacro.isAttribute(field)) {
+         return attribute(mapping, Kind.ATTRIBUTE, null, FieldMapMacro.getAttribute(field), field);
+      } else if (FieldMapMacro.isRelationshipAttribute(field)) {
+         FieldMapMacro.RelAttrMacroValues macroValues = FieldMapMacro.getValuesFromRelationshipAttribute(null, field);
+         return attribute(mapping, Kind.ATTRIBUTE, getRelationshipName(field), macroValues.attributeName, field);
+      } else if (FieldMapMacro.isRelToAttribute(field)) {
+         FieldMapMacro.RelToAttrMacroValues macroValues = FieldMapMacro.getValuesFromRelToAttribute(null, field);
+         return attribute(mapping, Kind.REL_TO_ATTRIBUTE, getRelationshipName(field), macroValues.attributeName, field);
+      }
+      return new RelationshipMapping(mapping, Kind.PATH, null, null, field);
+   }
+
+   private static RelationshipMapping attribute(CompiledFieldMapping mapping, Kind kind, String relationshipName, String attributeName, String field) {
+      SourcePath attributePath = SourcePath.compile(attributeName);
+      if (attributePath == null) {
+         // Not a plain attribute name, left to the record path lookup.
+         String prefix = kind == Kind.REL_TO_ATTRIBUTE ? "relTo.data.attributes." : "attributes.";
+         return new RelationshipMapping(mapping, Kind.PATH, relationshipName, null,
+               Strings.isNullOrEmpty(attributeName) ? field : prefix + attributeName + ".values[0]." + Constants.Mappings.VALUE);
+      }
+      return new RelationshipMapping(mapping, kind, relationshipName, attributePath, null);
+   }
+
+   /**
+    * Get the relationship name of a {@code @relAttr(name, ...)} or {@code @relToAttr(name, ...)} source: its first
+    * argument.
+    */
+   private static String getRelationshipName(String field) {
+      int start = field.indexOf('(');
+      int end = field.indexOf(',', start + 1);
+      if (start == -1 || end == -1) {
+         return null;
+      }
+      String relationshipName = field.substring(start + 1, end).trim();
+      return relationshipName.isEmpty() ? null : relationshipName;
+   }
+
+   CompiledFieldMapping getMapping() {
+      return mapping;
+   }
+
+   /**
+    * Name of the relationship the source macro is bound to, null when the mapping applies to every relationship.
+    */
+   String getRelationshipName() {
+      return relationshipName;
+   }
+
+   /**
+    * Read the mapped value of a relationship: the first value of the source attribute, or the value at the source
+    * path.
+    *
+    * @param relationship - relationship object
+    * @return value, null when not present
+    */
+   String getValue(JsonObject relationship) {
+      switch (kind) {
+         case ATTRIBUTE:
+            return getString(attributePath.getValues(getObject(relationship, ATTRIBUTES)));
+         case REL_TO_ATTRIBUTE:
+            JsonObject relTo = getObject(relationship, REL_TO);
+            JsonObject relToData = relTo == null ? null : getObject(relTo, DATA);
+            return getString(attributePath.getValues(relToData == null ? null : getObject(relToData, ATTRIBUTES)));
+         default:
+            return new JsonRecord(relationship, null).getValue(path);
+      }
+   }
+
+   private static String getString(JsonArray values) {
+      return values == null ? null : SourceValueExtractor.getString(values, 0, Constants.Mappings.VALUE);
+   }
+
+   private static JsonObject getObject(JsonObject parent, String name) {
+      JsonElement element = parent.get(name);
+      return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+   }
+}
@@ -0,0 +1,124 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.collections.CollectionUtils;
+
+import com.riversand.rsconnect.common.config.FieldMapping;
+
+/**
+ * Immutable relationship transformation plan: relationship mappings grouped by entity type and relationship name.
+ * A mapping whose source names a relationship ({@code @relAttr}, {@code @relToAttr}) applies to that relationship
+ * only; any other mapping applies to every relationship of the entity type. Within a group mappings keep their
+ * configuration order.
+ */
+final class RelationshipPlan {
+   private static final RelationshipPlan EMPTY = new RelationshipPlan(Collections.emptyMap());
+
+   private final Map<String, EntityTypeMappings> mappingsByEntityType;
+
+   private RelationshipPlan(Map<String, EntityTypeMappings> mappingsByEntityType) {
+      this.mappingsByEntityType = mappingsByEntityType;
+   }
+
+   /**
+    * Compile the relationship field map into a plan. Mappings without entity type never match a record and are left
+    * out of the plan.
+    *
+    * @param fieldMap - relationship mappings from the transform config
+    * @param catalog  - assigns the mapping ordinals
+    * @return compiled plan
+    */
+   static RelationshipPlan compile(List<FieldMapping> fieldMap, MappingCatalog catalog) {
+      if (CollectionUtils.isEmpty(fieldMap)) {
+         return EMPTY;
+      }
+      Map<String, List<RelationshipMapping>> grouped = new HashMap<>();
+      for (FieldMapping fieldMapping : fieldMap) {
+         if (fieldMapping.getEntityType() == null) {
+            continue;
+         }
+         grouped.computeIfAbsent(fieldMapping.getEntityType(), entityType -> new ArrayList<>())
+               .add(RelationshipMapping.compile(CompiledFieldMapping.compile(fieldMapping, catalog)));
+      }
+      Map<String, EntityTypeMappings> mappingsByEntityType = new HashMap<>(grouped.size());
+      for (Map.Entry<String, List<RelationshipMapping>> entry : grouped.entrySet()) {
+         mappingsByEntityType.put(entry.getKey(), new EntityTypeMappings(entry.getValue()));
+      }
+      return new RelationshipPlan(Collections.unmodifiableMap(mappingsByEntityType));
+   }
+
+   boolean isEmpty() {
+      return mappingsByEntityType.isEmpty();
+   }
+
+   /**
+    * Get the names of the relationships the plan reads, for any entity type.
+    *
+    * @return relationship names, null when some mapping applies to every relationship
+    */
+   Set<String> getRelationshipNames() {
+      Set<String> relationshipNames = new HashSet<>();
+      for (EntityTypeMappings mappings : mappingsByEntityType.values()) {
+         if (!mappings.unbound.isEmpty()) {
+            return null;
+         }
+         relationshipNames.addAll(mappings.byRelationshipName.keySet());
+      }
+      return relationshipNames;
+   }
+
+   /**
+    * Get the mappings to apply to the relationships of the given name, for records of the given entity type.
+    *
+    * @param entityType       - entity type of the record
+    * @param relationshipName - name of the relationship
+    * @return mappings in configuration order, empty when nothing is mapped
+    */
+   List<RelationshipMapping> getMappings(String entityType, String relationshipName) {
+      EntityTypeMappings mappings = mappingsByEntityType.get(entityType);
+      return mappings == null ? Collections.emptyList() : mappings.get(relationshipName);
+   }
+
+   private static final class EntityTypeMappings {
+      private final List<RelationshipMapping> unbound;
+      private final Map<String, List<RelationshipMapping>> byRelationshipName;
+
+      private EntityTypeMappings(List<RelationshipMapping> mappings) {
+         Set<String> relationshipNames = new LinkedHashSet<>();
+         List<RelationshipMapping> unboundMappings = new ArrayList<>();
+         for (RelationshipMapping mapping : mappings) {
+            if (mapping.getRelationshipName() == null) {
+               unboundMappings.add(mapping);
+            } else {
+               relationshipNames.add(mapping.getRelationshipName());
+            }
+         }
+         this.unbound = Collections.unmodifiableList(unboundMappings);
+
+         Map<String, List<RelationshipMapping>> grouped = new HashMap<>(relationshipNames.size());
+         for (String relationshipName : relationshipNames) {
+            List<RelationshipMapping> relationshipMappings = new ArrayList<>();
+            for (RelationshipMapping mapping : mappings) {
+               if (mapping.getRelationshipName() == null || relationshipName.equals(mapping.getRelationshipName())) {
+                  relationshipMappings.add(mapping);
+               }
+            }
+            grouped.put(relationshipName, Collections.unmodifiableList(relationshipMappings));
+         }
+         this.byRelationshipName = grouped;
+      }
+
+      private List<RelationshipMapping> get(String relationshipName) {
+         List<RelationshipMapping> mappings = byRelationshipName.get(relationshipName);
+         return mappings == null ? unbound : mappings;
+      }
+   }
+}
@@ -0,0 +1,40 @@
+package com.riversand.connectors.gdsntransformation;
+
+import com.google.gson.JsonObject;
+
+/**
+ * A context of the record being transformed, with its key and the attributes and relationships defined in it. The
+ * entity itself is represented as a context without key.
+ */
+final class ResolvedContext {
+   private final String contextKey;
+   private final JsonObject attributes;
+   private final JsonObject relationships;
+
+   ResolvedContext(String contextKey, JsonObject attributes, JsonObject relationships) {
+      this.contextKey = contextKey;
+      this.attributes = attributes;
+      this.relationships = relationships;
+   }
+
+   /**
+    * Key of the context in the source record, null for the entity itself.
+    */
+   String getContextKey() {
+      return contextKey;
+   }
+
+   /**
+    * Attributes defined in this context, null when there are none.
+    */
+   JsonObject getAttributes() {
+      return attributes;
+   }
+
+   /**
+    * Relationships defined in this context, null when there are none.
+    */
+   JsonObject getRelationships() {
+      return relationships;
+   }
+}
@@ -0,0 +1,95 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.common.base.Strings;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Read-only index over the inbound record of one transformation, built lazily. The entity and each of its contexts
+ * are looked up once, and every record path walked to a {@code values} array is walked once and remembered, so the
+ * lookups repeated for every mapping, value and index of the record start from the resolved object instead of
+ * walking the record from its root again.
+ * <p>
+ * Owned by a single transformation, not thread safe.
+ */
+final class SourceIndex {
+   private static final String ATTRIBUTES = "attributes";
+
+   private final JsonRecord record;
+   private final JsonObject inboundObject;
+   private final Map<String, JsonElement> contexts = new HashMap<>();
+   private final Map<String, JsonElement> arrays = new HashMap<>();
+
+   SourceIndex(JsonRecord record) {
+      this.record = record;
+      this.inboundObject = record.getJsonObject();
+   }
+
+   JsonRecord getRecord() {
+      return record;
+   }
+
+   /**
+    * Get the attributes of the entity, or of one of its contexts.
+    *
+    * @param contextKey - context key, null or empty for the entity itself
+    * @return attributes object, null when not present
+    */
+   JsonObject getAttributes(String contextKey) {
+      return getMember(getContext(contextKey), ATTRIBUTES);
+   }
+
+   /**
+    * Get the relationships of the entity, or of one of its contexts.
+    *
+    * @param contextKey - context key, null or empty for the entity itself
+    * @return relationships object, null when not present
+    */
+   JsonObject getRelationships(String contextKey) {
+      return getMember(getContext(contextKey), Constants.OPERATION_SEARCH_RELATIONSHIPS);
+   }
+
+   /**
+    * Find an array in the record by path, walking the path only the first time.
+    *
+    * @param path - record path, as for {@link JsonRecord#findArray}
+    * @return array, null when not present
+    */
+   JsonArray findArray(String path) {
+      JsonElement array = arrays.get(path);
+      if (array == null) {
+         JsonArray found = JsonRecord.findArray(inboundObject, path);
+         array = found == null ? JsonNull.INSTANCE : found;
+         arrays.put(path, array);
+      }
+      return array.isJsonArray() ? array.getAsJsonArray() : null;
+   }
+
+   /**
+    * The {@code data} object of the entity, or the object of one of its contexts.
+    */
+   private JsonObject getContext(String contextKey) {
+      String key = Strings.nullToEmpty(contextKey);
+      JsonElement context = contexts.get(key);
+      if (context == null) {
+         JsonObject found = key.isEmpty() ? JsonRecord.findObject(inboundObject, Constants.DATA)
+               : JsonRecord.findObject(inboundObject, String.format("%s.%s[%s]", Constants.DATA, Constants.CONTEXTS, key));
+         context = found == null ? JsonNull.INSTANCE : found;
+         contexts.put(key, context);
+      }
+      return context.isJsonObject() ? context.getAsJsonObject() : null;
+   }
+
+   private static JsonObject getMember(JsonObject parent, String name) {
+      JsonElement member = parent == null ? null : parent.get(name);
+      return member != null && member.isJsonObject() ? member.getAsJsonObject() : null;
+   }
+}
@@ -0,0 +1,157 @@
+package com.riversand.connectors.gdsntransformation;
+
+import com.google.common.base.Strings;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * Attribute path of an {@code @attr(...)} source, parsed once. Nested sources such as
+ * {@code sm_allergen.group[%d].sm_allergentypecode} keep their {@code %d} group slots, which are filled from the
+ * parent indices when the path is resolved.
+ */
+final class SourcePath {
+   private static final String VALUES = "values";
+   private static final String GROUP = "group";
+   private static final int NO_INDEX = -1;
+   private static final int PARENT_INDEX = -2;
+
+   private final String[] names;
+   private final int[] indices;
+
+   private SourcePath(String[] names, int[] indices) {
+      this.names = names;
+      this.indices = indices;
+   }
+
+   /**
+    * Parse an attribute path.
+    *
+    * @param attributeName - attribute name from the source macro, e.g. {@code parent.group[%d].child}
+    * @return compiled path, null when the path can not be parsed
+    */
+   static SourcePath compile(String attributeName) {
+      if (Strings.isNullOrEmpty(attributeName)) {
+         return null;
+      }
+      String[] segments = attributeName.split("\\.");
+      String[] names = new String[segments.length];
+      int[] indices = new int[segments.length];
+      for (int i = 0; i < segments.length; i++) {
+         String segment = segments[i].trim();
+         int bracket = segment.indexOf('[');
+         if (bracket == -1) {
+            names[i] = segment;
+            indices[i] = NO_INDEX;
+            continue;
+         }
+         if (!segment.endsWith("]")) {
+            return null;
+         }
+         names[i] = segment.substring(0, bracket);
+         String index = segment.substring(bracket + 1, segment.length() - 1);
+         if ("%d".equals(index)) {
+            indices[i] = PARENT_INDEX;
+         } else {
+            try {
+               indices[i] = Integer.parseInt(index);
+            } catch (NumberFormatException ex) {
+               return null;
+            }
+         }
+         if (names[i].isEmpty()) {
+            return null;
+         }
+      }
+      return new SourcePath(names, indices);
+   }
+
+   /**
+    * Name of the top level attribute of the path.
+    */
+   String getRootName() {
+      return names[0];
+   }
+
+   /**
+    * Get the attribute names of a nested path made of group levels only, e.g. {@code [parent, inner, child]} for
+    * {@code parent.group[%d].inner.group[%d].child}.
+    *
+    * @return attribute name at every level, null when the path is not nested or has any other index
+    */
+   String[] getGroupPath() {
+      if (names.length < 3 || names.length % 2 == 0) {
+         return null;
+      }
+      String[] groupPath = new String[names.length / 2 + 1];
+      for (int i = 0; i < names.length; i++) {
+         if (i % 2 == 0) {
+            if (indices[i] != NO_INDEX) {
+               return null;
+            }
+            groupPath[i / 2] = names[i];
+         } else if (indices[i] != PARENT_INDEX || !GROUP.equals(names[i])) {
+            return null;
+         }
+      }
+      return groupPath;
+   }
+
+   /**
+    * Resolve the {@code values} array of the attribute.
+    *
+    * @param attributes    - attributes object of the entity or of one of its contexts
+    * @param parentIndices - group indices, one for every {@code %d} in the path
+    * @return values array, null when the attribute is not present
+    */
+   JsonArray getValues(JsonObject attributes, Integer... parentIndices) {
+      return valuesOf(getAttribute(attributes, parentIndices));
+   }
+
+   /**
+    * Get the {@code values} array of an attribute object.
+    *
+    * @param attribute - attribute object, may be null
+    * @return values array, null when the attribute has none
+    */
+   static JsonArray valuesOf(JsonObject attribute) {
+      if (attribute == null) {
+         return null;
+      }
+      JsonElement values = attribute.get(VALUES);
+      return values != null && values.isJsonArray() ? values.getAsJsonArray() : null;
+   }
+
+   /**
+    * Resolve the attribute object the path points to.
+    *
+    * @param attributes    - attributes object of the entity or of one of its contexts
+    * @param parentIndices - group indices, one for every {@code %d} in the path
+    * @return attribute object, null when the attribute is not present
+    */
+   JsonObject getAttribute(JsonObject attributes, Integer... parentIndices) {
+      JsonElement current = attributes;
+      int parent = 0;
+      for (int i = 0; i < names.length; i++) {
+         if (current == null || !current.isJsonObject()) {
+            return null;
+         }
+         current = current.getAsJsonObject().get(names[i]);
+         if (indices[i] == NO_INDEX) {
+            continue;
+         }
+         int index = indices[i];
+         if (index == PARENT_INDEX) {
+            if (parentIndices == null || parent >= parentIndices.length) {
+               return null;
+            }
+            index = parentIndices[parent++];
+         }
+         if (current == null || !current.isJsonArray() || index >= current.getAsJsonArray().size()) {
+            return null;
+         }
+         current = current.getAsJsonArray().get(index);
+      }
+      return current != null && current.isJsonObject() ? current.getAsJsonObject() : null;
+   }
+}
@@ -0,0 +1,167 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * The part of an RSJSON entity a transformer reads: the attributes that are the source of an entity mapping
+ * ({@code @attr}, and the group attributes of nested mappings) and the relationships named by the relationship
+ * mappings ({@code @relAttr}, {@code @relToAttr}). Mappings are not bound to a context, so the entity data and every
+ * context are read, each trimmed to the same attributes and relationships. Entity properties and context
+ * definitions are always kept.
+ * <p>
+ * The collect stage can request only these fields, see {@link #toFields()}, or drop the rest while parsing with
+ * {@link #read(JsonReader)}. Either way the trimmed entity transforms exactly like the full one.
+ */
+public final class SourceProjection {
+   /**
+    * Field name standing for every attribute or relationship.
+    */
+   public static final String ALL = "_ALL";
+
+   private static final String ATTRIBUTES = "attributes";
+   private static final String RELATIONSHIPS = "relationships";
+
+   // Null when every attribute, or every relationship, is read.
+   private final Set<String> attributeNames;
+   private final Set<String> relationshipNames;
+   private final StreamingRecordReader reader;
+
+   private SourceProjection(Set<String> attributeNames, Set<String> relationshipNames) {
+      this.attributeNames = attributeNames;
+      this.relationshipNames = relationshipNames;
+      this.reader = new StreamingRecordReader(this);
+   }
+
+   /**
+    * Compute the projection of the given plans.
+    *
+    * @param mappings         - compiled entity mappings, grouped by entity type
+    * @param relationshipPlan - compiled relationship mappings
+    * @return projection
+    */
+   static SourceProjection compile(Collection<List<CompiledFieldMapping>> mappings, RelationshipPlan relationshipPlan) {
+      Set<String> attributeNames = new HashSet<>();
+      for (List<CompiledFieldMapping> entityMappings : mappings) {
+         for (CompiledFieldMapping mapping : entityMappings) {
+            if (!addAttributeNames(mapping, attributeNames)) {
+               attributeNames = null;
+               break;
+            }
+         }
+         if (attributeNames == null) {
+            break;
+         }
+      }
+      Set<String> relationshipNames = relationshipPlan.getRelationshipNames();
+      return new SourceProjection(attributeNames == null ? null : Collections.unmodifiableSet(attributeNames),
+            relationshipNames == null ? null : Collections.unmodifiableSet(relationshipNames));
+   }
+
+   /**
+    * Add the attributes read by a mapping.
+    *
+    * @return false when the mapping reads its source outside of {@code @attr(...)}, and may read any attribute
+    */
+   private static boolean addAttributeNames(CompiledFieldMapping mapping, Set<String> attributeNames) {
+      if (mapping.isMultiLevel()) {
+         for (CompiledFieldMapping child : mapping.getChildren()) {
+            if (child.getParentAttributeName() != null) {
+               attributeNames.add(child.getParentAttributeName());
+            }
+            if (!addAttributeNames(child, attributeNames)) {
+               return false;
+            }
+         }
+         return true;
+      }
+      if (mapping.getSourcePath() == null) {
+         return false;
+      }
+      attributeNames.add(mapping.getSourcePath().getRootName());
+      return true;
+   }
+
+   /**
+    * Get the names of the attributes read.
+    *
+    * @return attribute names, null when every attribute may be read
+    */
+   public Set<String> getAttributeNames() {
+      return attributeNames;
+   }
+
+   /**
+    * Get the names of the relationships read.
+    *
+    * @return relationship names, empty when no relationship is read, null when every relationship may be read
+    */
+   public Set<String> getRelationshipNames() {
+      return relationshipNames;
+   }
+
+   public boolean isAttributeRead(String name) {
+      return attributeNames == null || attributeNames.contains(name);
+   }
+
+   public boolean isRelationshipRead(String name) {
+      return relationshipNames == null || relationshipNames.contains(name);
+   }
+
+   /**
+    * Check whether any relationship is read.
+    */
+   public boolean isRelationshipsRead() {
+      return relationshipNames == null || !relationshipNames.isEmpty();
+   }
+
+   /**
+    * Render the projection as the fields of an entity request: sorted {@code attributes} and {@code relationships}
+    * name lists, {@value #ALL} standing for every one.
+    *
+    * @return fields object
+    */
+   public JsonObject toFields() {
+      JsonObject fields = new JsonObject();
+      fields.add(ATTRIBUTES, toArray(attributeNames));
+      fields.add(RELATIONSHIPS, toArray(relationshipNames));
+      return fields;
+   }
+
+   private static JsonArray toArray(Set<String> names) {
+      JsonArray array = new JsonArray();
+      if (names == null) {
+         array.add(ALL);
+      } else {
+         for (String name : new TreeSet<>(names)) {
+            array.add(name);
+         }
+      }
+      return array;
+   }
+
+   /**
+    * Read the next entity of a stream, skipping what is not read by the transformer without building it.
+    *
+    * @param reader - reader positioned at the start of an entity object
+    * @return trimmed entity
+    * @throws IOException when the stream can not be read or is not valid JSON
+    */
+   public JsonObject read(JsonReader reader) throws IOException {
+      return this.reader.read(reader);
+   }
+
+   @Override
+   public String toString() {
+      return toFields().toString();
+   }
+}
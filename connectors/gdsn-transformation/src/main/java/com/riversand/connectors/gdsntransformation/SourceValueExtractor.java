@@ -0,0 +1,107 @@
+package com.riversand.connectors.gdsntransformation;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.google.common.base.Strings;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Reads mapping values straight from the resolved {@code values} array of a source attribute. The array is looked up
+ * once per mapping and context, and every value, UOM, locale and reference data identifier is read from it by index
+ * instead of walking the record path again for each of them.
+ */
+final class SourceValueExtractor {
+   static final String LOCALE = "locale";
+   static final String UOM = "uom";
+   private static final String PROPERTIES = "properties";
+   private static final String REFERENCE_DATA_IDENTIFIER = "referenceDataIdentifier";
+
+   private SourceValueExtractor() {
+   }
+
+   /**
+    * Get the attributes object of the entity, or of the given context of the entity.
+    *
+    * @param inboundObject - RSJSON entity
+    * @param contextKey    - context key, null or empty for the entity itself
+    * @return attributes object, null when not present
+    */
+   static JsonObject getAttributes(JsonObject inboundObject, String contextKey) {
+      String attributePath = Strings.isNullOrEmpty(contextKey)
+            ? String.format(Constants.Mapping.ENTITY_ATTRIBUTE_IN_SELF, "")
+            : String.format(Constants.Mapping.ENTITY_ATTRIBUTE_IN_CONTEXT, contextKey, "");
+      return JsonRecord.findObject(inboundObject, StringUtils.removeEnd(attributePath, "."));
+   }
+
+   /**
+    * Extract the values of a mapping with their UOM and locale. Single valued mappings read the first value.
+    * Collection and localizable mappings read values up to the first empty one.
+    *
+    * @param values  - values array of the source attribute, may be null
+    * @param mapping - compiled mapping
+    * @param out     - receives the extracted values
+    */
+   static void extract(JsonArray values, CompiledFieldMapping mapping, SourceValues out) {
+      out.reset(values);
+      if (values == null) {
+         return;
+      }
+      int count = mapping.isCollection() ? values.size() : Math.min(1, values.size());
+      for (int index = 0; index < count; index++) {
+         // Value, UOM and locale are read from the same value object.
+         JsonObject valueObject = getValueObject(values, index);
+         String value = valueObject == null ? null : asString(valueObject.get(Constants.Mappings.VALUE));
+         // The first empty value ends the collection.
+         if (Strings.isNullOrEmpty(value)) {
+            break;
+         }
+         out.add(value, mapping.hasUOM() ? asString(valueObject.get(UOM)) : null,
+               mapping.isLocalizable() ? asString(valueObject.get(LOCALE)) : null);
+      }
+   }
+
+   /**
+    * Get a field of the value at the given index.
+    *
+    * @param values - values array
+    * @param index  - index of the value
+    * @param key    - field of the value, e.g. {@code value} or {@code locale}
+    * @return field value as string, null when not present
+    */
+   static String getString(JsonArray values, int index, String key) {
+      JsonObject value = getValueObject(values, index);
+      return value == null ? null : asString(value.get(key));
+   }
+
+   /**
+    * Get the reference data identifier of the value at the given index.
+    */
+   static String getReferenceDataIdentifier(JsonArray values, int index) {
+      JsonObject value = getValueObject(values, index);
+      if (value == null) {
+         return null;
+      }
+      JsonElement properties = value.get(PROPERTIES);
+      return properties != null && properties.isJsonObject() ? asString(properties.getAsJsonObject().get(REFERENCE_DATA_IDENTIFIER)) : null;
+   }
+
+   private static JsonObject getValueObject(JsonArray values, int index) {
+      if (values == null || index >= values.size()) {
+         return null;
+      }
+      JsonElement value = values.get(index);
+      return value.isJsonObject() ? value.getAsJsonObject() : null;
+   }
+
+   private static String asString(JsonElement element) {
+      if (element == null || element.isJsonNull()) {
+         return null;
+      }
+      return element.isJsonPrimitive() ? element.getAsString() : element.toString();
+   }
+}
@@ -0,0 +1,78 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.Arrays;
+
+import com.google.gson.JsonArray;
+
+/**
+ * Values extracted from the source for one mapping, as a list of value, UOM and locale entries. The entry index is
+ * the index of the value in the source and of its destination entry for collection mappings. Owned by a
+ * {@link TransformSession} and reused for every mapping of the record, so the buffers only grow.
+ */
+final class SourceValues {
+   private static final int INITIAL_CAPACITY = 8;
+
+   private JsonArray values;
+   private String[] entryValues = new String[INITIAL_CAPACITY];
+   private String[] entryUOMs = new String[INITIAL_CAPACITY];
+   private String[] entryLocales = new String[INITIAL_CAPACITY];
+   private int size;
+
+   void reset(JsonArray values) {
+      this.values = values;
+      Arrays.fill(entryValues, 0, size, null);
+      Arrays.fill(entryUOMs, 0, size, null);
+      Arrays.fill(entryLocales, 0, size, null);
+      this.size = 0;
+   }
+
+   /**
+    * The source {@code values} array, null when the values were not read from an attribute.
+    */
+   JsonArray getValues() {
+      return values;
+   }
+
+   /**
+    * Add the next value.
+    *
+    * @param value  - value, not empty
+    * @param uom    - unit of measure of the value, null when not mapped or not present
+    * @param locale - locale of the value, null when not mapped or not present
+    */
+   void add(String value, String uom, String locale) {
+      if (size == entryValues.length) {
+         int capacity = size * 2;
+         entryValues = Arrays.copyOf(entryValues, capacity);
+         entryUOMs = Arrays.copyOf(entryUOMs, capacity);
+         entryLocales = Arrays.copyOf(entryLocales, capacity);
+      }
+      entryValues[size] = value;
+      entryUOMs[size] = uom;
+      entryLocales[size] = locale;
+      size++;
+   }
+
+   /**
+    * Number of values; single valued mappings have at most one.
+    */
+   int size() {
+      return size;
+   }
+
+   boolean isEmpty() {
+      return size == 0;
+   }
+
+   String getValue(int index) {
+      return entryValues[index];
+   }
+
+   String getUOM(int index) {
+      return entryUOMs[index];
+   }
+
+   String getLocale(int index) {
+      return entryLocales[index];
+   }
+}
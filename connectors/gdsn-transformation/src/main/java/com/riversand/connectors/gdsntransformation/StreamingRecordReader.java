@@ -0,0 +1,131 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.IOException;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+
+/**
+ * Reads an RSJSON entity from a pull parser into a pruned tree holding only what a {@link SourceProjection} reads:
+ * attributes and relationships outside of the projection are skipped without being built. Everything else (entity
+ * properties, context definitions) is kept as is, so the pruned entity transforms exactly like the full one.
+ */
+final class StreamingRecordReader {
+   private static final String ATTRIBUTES = "attributes";
+   private static final TypeAdapter<JsonElement> JSON_ELEMENT = GsonBuilder.getGsonInstance().getAdapter(JsonElement.class);
+
+   private final SourceProjection projection;
+
+   StreamingRecordReader(SourceProjection projection) {
+      this.projection = projection;
+   }
+
+   /**
+    * Read the next entity of the stream.
+    *
+    * @param reader - reader positioned at the start of an entity object
+    * @return pruned entity
+    * @throws IOException when the stream can not be read or is not valid JSON
+    */
+   JsonObject read(JsonReader reader) throws IOException {
+      JsonObject entity = new JsonObject();
+      reader.beginObject();
+      while (reader.hasNext()) {
+         String name = reader.nextName();
+         if (Constants.DATA.equals(name) && reader.peek() == JsonToken.BEGIN_OBJECT) {
+            entity.add(name, readData(reader));
+         } else {
+            entity.add(name, JSON_ELEMENT.read(reader));
+         }
+      }
+      reader.endObject();
+      return entity;
+   }
+
+   private JsonObject readData(JsonReader reader) throws IOException {
+      JsonObject data = new JsonObject();
+      reader.beginObject();
+      while (reader.hasNext()) {
+         String name = reader.nextName();
+         if (Constants.CONTEXTS.equals(name) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+            data.add(name, readContexts(reader));
+         } else {
+            readMember(reader, name, data);
+         }
+      }
+      reader.endObject();
+      return data;
+   }
+
+   private JsonArray readContexts(JsonReader reader) throws IOException {
+      JsonArray contexts = new JsonArray();
+      reader.beginArray();
+      while (reader.hasNext()) {
+         if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            contexts.add(JSON_ELEMENT.read(reader));
+            continue;
+         }
+         JsonObject context = new JsonObject();
+         reader.beginObject();
+         while (reader.hasNext()) {
+            readMember(reader, reader.nextName(), context);
+         }
+         reader.endObject();
+         contexts.add(context);
+      }
+      reader.endArray();
+      return contexts;
+   }
+
+   /**
+    * Read a member of the entity data or of a context, where attributes and relationships live.
+    */
+   private void readMember(JsonReader reader, String name, JsonObject parent) throws IOException {
+      if (ATTRIBUTES.equals(name) && projection.getAttributeNames() != null && reader.peek() == JsonToken.BEGIN_OBJECT) {
+         parent.add(name, readAttributes(reader));
+      } else if (Constants.OPERATION_SEARCH_RELATIONSHIPS.equals(name) && !projection.isRelationshipsRead()) {
+         reader.skipValue();
+      } else if (Constants.OPERATION_SEARCH_RELATIONSHIPS.equals(name) && projection.getRelationshipNames() != null && reader.peek() == JsonToken.BEGIN_OBJECT) {
+         parent.add(name, readRelationships(reader));
+      } else {
+         parent.add(name, JSON_ELEMENT.read(reader));
+      }
+   }
+
+   private JsonObject readAttributes(JsonReader reader) throws IOException {
+      JsonObject attributes = new JsonObject();
+      reader.beginObject();
+      while (reader.hasNext()) {
+         String name = reader.nextName();
+         if (projection.isAttributeRead(name)) {
+            attributes.add(name, JSON_ELEMENT.read(reader));
+         } else {
+            reader.skipValue();
+         }
+      }
+      reader.endObject();
+      return attributes;
+   }
+
+   private JsonObject readRelationships(JsonReader reader) throws IOException {
+      JsonObject relationships = new JsonObject();
+      reader.beginObject();
+      while (reader.hasNext()) {
+         String name = reader.nextName();
+         if (projection.isRelationshipRead(name)) {
+            relationships.add(name, JSON_ELEMENT.read(reader));
+         } else {
+            reader.skipValue();
+         }
+      }
+      reader.endObject();
+      return relationships;
+   }
+}
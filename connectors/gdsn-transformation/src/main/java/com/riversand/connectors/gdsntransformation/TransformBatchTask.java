@@ -0,0 +1,76 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManager;
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManagerLogger;
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+import com.riversand.rsconnect.interfaces.models.IRecord;
+import com.riversand.rsconnect.interfaces.models.RdpStatusDetail;
+
+/**
+ * Fork-join task transforming a range of a record batch. Ranges are split in halves until they are below the
+ * threshold; every task writes only its own slots of the result array, so results keep the input order and no
+ * locking is needed.
+ */
+final class TransformBatchTask extends RecursiveAction {
+   private static final long serialVersionUID = 1L;
+   // Splits per worker thread, leaves room for work stealing when records differ in size.
+   private static final int SPLITS_PER_THREAD = 4;
+   private static final ProfilerManagerLogger pmLogger = ProfilerManager.getLogger(TransformBatchTask.class);
+
+   private final transient GDSNTransformer transformer;
+   private final transient List<IRecord> records;
+   private final transient List<RdpStatusDetail> messages;
+   private final transient List<TransformErrors> errors;
+   private final transient IRecord[] results;
+   private final int from;
+   private final int to;
+   private final int threshold;
+
+   TransformBatchTask(GDSNTransformer transformer, List<IRecord> records, List<RdpStatusDetail> messages, List<TransformErrors> errors,
+                      IRecord[] results, int from, int to, int threshold) {
+      this.transformer = transformer;
+      this.records = records;
+      this.messages = messages;
+      this.errors = errors;
+      this.results = results;
+      this.from = from;
+      this.to = to;
+      this.threshold = threshold;
+   }
+
+   /**
+    * Number of records a task transforms without splitting further.
+    *
+    * @param size        - batch size
+    * @param parallelism - parallelism of the pool running the batch
+    * @return threshold, at least one
+    */
+   static int getThreshold(int size, int parallelism) {
+      return Math.max(1, size / (Math.max(1, parallelism) * SPLITS_PER_THREAD));
+   }
+
+   @Override
+   protected void compute() {
+      if (to - from <= threshold) {
+         for (int i = from; i < to; i++) {
+            results[i] = transform(i);
+         }
+         return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(new TransformBatchTask(transformer, records, messages, errors, results, from, middle, threshold),
+            new TransformBatchTask(transformer, records, messages, errors, results, middle, to, threshold));
+   }
+
+   private IRecord transform(int index) {
+      try {
+         return transformer.transform(records.get(index), messages == null ? null : messages.get(index), errors == null ? null : errors.get(index));
+      } catch (Exception ex) {
+         pmLogger.error(Constants.RSCONNECT_SERVICE, "RSC7273", "Failed to transform record " + index + ": " + ex.getMessage());
+         return null;
+      }
+   }
+}
@@ -0,0 +1,51 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.riversand.rsconnect.interfaces.models.IRecord;
+
+/**
+ * Result of an incremental transformation: the full transformed document, and what changed since the entity was
+ * last transformed by the same transformer.
+ */
+public final class TransformDelta {
+   private final IRecord document;
+   private final IRecord changes;
+   private final List<String> removedPaths;
+
+   TransformDelta(IRecord document, IRecord changes, List<String> removedPaths) {
+      this.document = document;
+      this.changes = changes;
+      this.removedPaths = Collections.unmodifiableList(removedPaths);
+   }
+
+   /**
+    * The full transformed document, the same as {@link GDSNTransformer#transform} returns.
+    */
+   public IRecord getDocument() {
+      return document;
+   }
+
+   /**
+    * The output of the mappings whose output changed, null when nothing changed. For an entity not transformed
+    * before, this is the whole document.
+    */
+   public IRecord getChanges() {
+      return changes;
+   }
+
+   /**
+    * Destination paths written by the previous transformation of the entity and not by this one.
+    */
+   public List<String> getRemovedPaths() {
+      return removedPaths;
+   }
+
+   /**
+    * Check whether the document is the same as the one of the previous transformation of the entity.
+    */
+   public boolean isUnchanged() {
+      return changes == null && removedPaths.isEmpty();
+   }
+}
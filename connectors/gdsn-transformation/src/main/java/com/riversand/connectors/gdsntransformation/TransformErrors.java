@@ -0,0 +1,122 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.riversand.rsconnect.common.config.FieldMapping;
+
+/**
+ * Mappings that failed while transforming a record. A failing mapping is recorded here and the transformation goes
+ * on with the next mapping, so a record is only missing the output of the mappings listed. Nothing is allocated
+ * for a record without errors, and at most a given number of errors is kept per record; the others are only
+ * counted.
+ * <p>
+ * Owned by a single transformation, not thread safe.
+ */
+public final class TransformErrors {
+   public static final int DEFAULT_MAX_ERRORS = 100;
+
+   private final int maxErrors;
+   private List<MappingError> errors;
+   private int droppedCount;
+
+   public TransformErrors() {
+      this(DEFAULT_MAX_ERRORS);
+   }
+
+   /**
+    * @param maxErrors - number of errors kept
+    */
+   public TransformErrors(int maxErrors) {
+      this.maxErrors = maxErrors;
+   }
+
+   /**
+    * Record a failed mapping.
+    *
+    * @param mapping    - failed mapping
+    * @param contextKey - context the mapping was applied in, null for the entity data
+    * @param reason     - why the mapping failed
+    */
+   void add(CompiledFieldMapping mapping, String contextKey, String reason) {
+      if (errors == null) {
+         errors = new ArrayList<>();
+      }
+      if (errors.size() < maxErrors) {
+         errors.add(new MappingError(mapping.getFieldMapping(), contextKey, reason));
+      } else {
+         droppedCount++;
+      }
+   }
+
+   public boolean isEmpty() {
+      return errors == null;
+   }
+
+   /**
+    * Errors kept, in the order they occurred.
+    */
+   public List<MappingError> getErrors() {
+      return errors == null ? Collections.emptyList() : Collections.unmodifiableList(errors);
+   }
+
+   /**
+    * Number of errors beyond the ones kept.
+    */
+   public int getDroppedCount() {
+      return droppedCount;
+   }
+
+   @Override
+   public String toString() {
+      return droppedCount == 0 ? getErrors().toString() : getErrors() + " and " + droppedCount + " more";
+   }
+
+   /**
+    * A failed mapping.
+    */
+   public static final class MappingError {
+      private final FieldMapping mapping;
+      private final String contextKey;
+      private final String reason;
+
+      private MappingError(FieldMapping mapping, String contextKey, String reason) {
+         this.mapping = mapping;
+         this.contextKey = contextKey;
+         this.reason = reason;
+      }
+
+      /**
+       * Id of the mapping, null when the mapping has none.
+       */
+      public String getMappingId() {
+         return mapping.getId() == null ? null : String.valueOf(mapping.getId());
+      }
+
+      public String getSource() {
+         return mapping.getSource();
+      }
+
+      public String getDestination() {
+         return mapping.getDestination();
+      }
+
+      /**
+       * Context the mapping was applied in, null for the entity data.
+       */
+      public String getContextKey() {
+         return contextKey;
+      }
+
+      public String getReason() {
+         return reason;
+      }
+
+      @Override
+      public String toString() {
+         return "mapping " + getMappingId() + " " + getSource() + " -> " + getDestination()
+               + (contextKey == null ? "" : " in context " + contextKey) + ": " + reason;
+      }
+   }
+}
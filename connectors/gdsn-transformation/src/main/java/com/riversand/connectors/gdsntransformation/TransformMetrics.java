@@ -0,0 +1,209 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of a transformer: records, per-record latency, records per entity type, hits, misses, errors and
+ * incremental reuses per mapping, and output cache hits and misses. Counters are {@link LongAdder}s, so
+ * recording never blocks and stays cheap when the records of a batch are transformed on many threads; per-mapping
+ * counters are indexed by the mapping ordinal.
+ */
+public final class TransformMetrics implements TransformMetricsMXBean {
+   // Bucket i counts latencies below 2^i nanoseconds; the last bucket takes everything above.
+   private static final int LATENCY_BUCKETS = 40;
+
+   private final List<String> mappingNames;
+   private final LongAdder records = new LongAdder();
+   private final LongAdder failedRecords = new LongAdder();
+   private final LongAdder[] latencies = newAdders(LATENCY_BUCKETS);
+   private final Map<String, LongAdder> entityTypes = new ConcurrentHashMap<>();
+   private final LongAdder[] hits;
+   private final LongAdder[] misses;
+   private final LongAdder[] errors;
+   private final LongAdder[] reuses;
+   private final LongAdder outputCacheHits = new LongAdder();
+   private final LongAdder outputCacheMisses = new LongAdder();
+   private volatile long startNanos = System.nanoTime();
+
+   TransformMetrics(MappingCatalog catalog) {
+      this.mappingNames = catalog.getNames();
+      this.hits = newAdders(catalog.size());
+      this.misses = newAdders(catalog.size());
+      this.errors = newAdders(catalog.size());
+      this.reuses = newAdders(catalog.size());
+   }
+
+   private static LongAdder[] newAdders(int size) {
+      LongAdder[] adders = new LongAdder[size];
+      for (int i = 0; i < size; i++) {
+         adders[i] = new LongAdder();
+      }
+      return adders;
+   }
+
+   /**
+    * Record a transformed record.
+    *
+    * @param entityType - entity type of the record
+    * @param nanos      - time taken
+    */
+   void recordTransformed(String entityType, long nanos) {
+      records.increment();
+      latencies[getBucket(nanos)].increment();
+      entityTypes.computeIfAbsent(entityType, type -> new LongAdder()).increment();
+   }
+
+   /**
+    * Record a record that could not be transformed.
+    */
+   void recordFailed() {
+      failedRecords.increment();
+   }
+
+   void recordHit(CompiledFieldMapping mapping) {
+      hits[mapping.getOrdinal()].increment();
+   }
+
+   void recordMiss(CompiledFieldMapping mapping) {
+      misses[mapping.getOrdinal()].increment();
+   }
+
+   void recordError(CompiledFieldMapping mapping) {
+      errors[mapping.getOrdinal()].increment();
+   }
+
+   void recordReuse(CompiledFieldMapping mapping) {
+      reuses[mapping.getOrdinal()].increment();
+   }
+
+   /**
+    * Record a record served by the output cache.
+    */
+   void recordOutputCacheHit() {
+      outputCacheHits.increment();
+   }
+
+   /**
+    * Record a record transformed, as its output was not cached.
+    */
+   void recordOutputCacheMiss() {
+      outputCacheMisses.increment();
+   }
+
+   private static int getBucket(long nanos) {
+      int bucket = 64 - Long.numberOfLeadingZeros(Math.max(0, nanos));
+      return Math.min(bucket, LATENCY_BUCKETS - 1);
+   }
+
+   @Override
+   public long getRecordCount() {
+      return records.sum();
+   }
+
+   @Override
+   public long getFailedRecordCount() {
+      return failedRecords.sum();
+   }
+
+   @Override
+   public double getRecordsPerSecond() {
+      long elapsed = System.nanoTime() - startNanos;
+      return elapsed <= 0 ? 0 : records.sum() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+   }
+
+   @Override
+   public Map<String, Long> getLatencyHistogram() {
+      Map<String, Long> histogram = new LinkedHashMap<>();
+      for (int i = 0; i < LATENCY_BUCKETS; i++) {
+         long count = latencies[i].sum();
+         if (count > 0) {
+            histogram.put(i == LATENCY_BUCKETS - 1 ? "overflow" : "<" + getUpperBoundMicros(i) + "us", count);
+         }
+      }
+      return histogram;
+   }
+
+   private static String getUpperBoundMicros(int bucket) {
+      long nanos = 1L << bucket;
+      return nanos < 1000 ? String.format("%.3f", nanos / 1000d) : String.valueOf(nanos / 1000);
+   }
+
+   @Override
+   public Map<String, Long> getEntityTypeCounts() {
+      Map<String, Long> counts = new TreeMap<>();
+      for (Map.Entry<String, LongAdder> entry : entityTypes.entrySet()) {
+         counts.put(entry.getKey(), entry.getValue().sum());
+      }
+      return counts;
+   }
+
+   @Override
+   public Map<String, Long> getMappingHits() {
+      return toMap(hits);
+   }
+
+   @Override
+   public Map<String, Long> getMappingMisses() {
+      return toMap(misses);
+   }
+
+   @Override
+   public Map<String, Long> getMappingErrors() {
+      return toMap(errors);
+   }
+
+   @Override
+   public Map<String, Long> getMappingReuses() {
+      return toMap(reuses);
+   }
+
+   @Override
+   public long getOutputCacheHits() {
+      return outputCacheHits.sum();
+   }
+
+   @Override
+   public long getOutputCacheMisses() {
+      return outputCacheMisses.sum();
+   }
+
+   /**
+    * Per-mapping counters, leaving out mappings that never counted. Keys are prefixed with the ordinal, as two
+    * mappings may share source and destination.
+    */
+   private Map<String, Long> toMap(LongAdder[] counters) {
+      if (counters.length == 0) {
+         return Collections.emptyMap();
+      }
+      Map<String, Long> counts = new LinkedHashMap<>();
+      for (int i = 0; i < counters.length; i++) {
+         long count = counters[i].sum();
+         if (count > 0) {
+            counts.put(i + ": " + mappingNames.get(i), count);
+         }
+      }
+      return counts;
+   }
+
+   @Override
+   public void reset() {
+      records.reset();
+      failedRecords.reset();
+      outputCacheHits.reset();
+      outputCacheMisses.reset();
+      for (LongAdder[] counters : new LongAdder[][]{latencies, hits, misses, errors, reuses}) {
+         for (LongAdder counter : counters) {
+            counter.reset();
+         }
+      }
+      entityTypes.clear();
+      startNanos = System.nanoTime();
+   }
+}
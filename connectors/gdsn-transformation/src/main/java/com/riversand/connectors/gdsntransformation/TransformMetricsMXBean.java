@@ -0,0 +1,70 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link TransformMetrics}.
+ */
+public interface TransformMetricsMXBean {
+
+   /**
+    * Number of records transformed since the metrics were created or reset.
+    */
+   long getRecordCount();
+
+   /**
+    * Number of records whose transformation failed.
+    */
+   long getFailedRecordCount();
+
+   /**
+    * Average throughput since the metrics were created or reset.
+    */
+   double getRecordsPerSecond();
+
+   /**
+    * Per-record latency histogram: record count per power of two bucket, keyed by the upper bound in microseconds.
+    */
+   Map<String, Long> getLatencyHistogram();
+
+   /**
+    * Record count per entity type.
+    */
+   Map<String, Long> getEntityTypeCounts();
+
+   /**
+    * Number of times each mapping found source values and was applied, keyed by {@code source -> destination}. An
+    * application counts once, whatever the number of values it writes.
+    */
+   Map<String, Long> getMappingHits();
+
+   /**
+    * Number of times a mapping found no source value.
+    */
+   Map<String, Long> getMappingMisses();
+
+   /**
+    * Number of times a mapping failed.
+    */
+   Map<String, Long> getMappingErrors();
+
+   /**
+    * Number of times the output of a mapping was reused by incremental transformation, as its source did not change.
+    */
+   Map<String, Long> getMappingReuses();
+
+   /**
+    * Number of records served by the output cache.
+    */
+   long getOutputCacheHits();
+
+   /**
+    * Number of records transformed while the output cache was enabled, as their output was not cached.
+    */
+   long getOutputCacheMisses();
+
+   /**
+    * Reset all counters.
+    */
+   void reset();
+}
@@ -0,0 +1,26 @@
+package com.riversand.connectors.gdsntransformation;
+
+/**
+ * Receives the metrics of every transformer, so they can be published to a monitoring system. A registry is
+ * selected with the {@value GDSNTransformer#METRICS_REGISTRY_SETTING} transform setting: {@code jmx} for
+ * {@link JmxTransformMetricsRegistry}, or the class name of an implementation with a public no-argument
+ * constructor.
+ */
+public interface TransformMetricsRegistry {
+
+   /**
+    * Called when a transformer is created.
+    *
+    * @param profileId - id of the connect profile of the transformer
+    * @param metrics   - metrics of the transformer
+    */
+   void register(String profileId, TransformMetrics metrics);
+
+   /**
+    * Called when the transformer is closed.
+    *
+    * @param profileId - id of the connect profile of the transformer
+    * @param metrics   - metrics of the transformer
+    */
+   void unregister(String profileId, TransformMetrics metrics);
+}
@@ -0,0 +1,418 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManager;
+import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManagerLogger;
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
+import com.riversand.rsconnect.common.helpers.ConnectRuntimeException;
+import com.riversand.rsconnect.common.rsconnect.driver.Constants;
+import com.riversand.rsconnect.interfaces.models.IRecord;
+import com.riversand.rsconnect.interfaces.transformer.IRecordTransformer;
+
+/**
+ * Runs a transformer between a collect and a publish stage as a pipeline: parse, transform and serialize run
+ * concurrently, connected by bounded queues, so reading the source, transforming and publishing overlap instead of
+ * alternating on one thread. The source is read and parsed on one thread, records are transformed by several
+ * workers, and serialized and handed to the sink on one thread.
+ * <p>
+ * The number of records in flight is bounded by the queue capacity: when transformation or publishing falls behind,
+ * reading the source blocks. Output is in source order when ordered, else in completion order. A record that fails
+ * to transform is logged and left out, like in {@link GDSNTransformer#transformAll}; a failure of the source, parser,
+ * serializer or sink stops the pipeline. The mappings that failed for a record transformed by a
+ * {@link GDSNTransformer} are handed to an {@link ErrorSink}, when given.
+ */
+public final class TransformPipeline implements AutoCloseable {
+   static final String PARSE = "parse";
+   static final String TRANSFORM = "transform";
+   static final String SERIALIZE = "serialize";
+   private static final ProfilerManagerLogger pmLogger = ProfilerManager.getLogger(TransformPipeline.class);
+   private static final long POLL_MILLIS = 100;
+   private static final Item END = new Item(-1, null, null);
+
+   /**
+    * Parses a source item into a record.
+    */
+   public interface Parser<I> {
+      IRecord parse(I input) throws Exception;
+   }
+
+   /**
+    * Serializes a transformed record for the sink.
+    */
+   public interface Serializer<O> {
+      O serialize(IRecord record) throws Exception;
+   }
+
+   /**
+    * Receives the serialized records, on the serialize thread.
+    */
+   public interface Sink<O> {
+      void accept(O output) throws Exception;
+   }
+
+   /**
+    * Receives the mappings that failed for a record, on the serialize thread, before the record is published.
+    */
+   public interface ErrorSink {
+      void accept(long sequence, TransformErrors errors) throws Exception;
+   }
+
+   private final IRecordTransformer transformer;
+   private final Executor executor;
+   private final boolean ownsExecutor;
+   private final int workers;
+   private final int capacity;
+   private final boolean ordered;
+   private final Map<String, StageStats> stats = new LinkedHashMap<>();
+
+   /**
+    * Pipeline on threads of its own.
+    *
+    * @param transformer - transformer of the records, shared by the workers
+    * @param workers     - number of records transformed concurrently
+    * @param capacity    - maximum number of records in flight
+    * @param ordered     - true to publish the records in source order
+    */
+   public TransformPipeline(IRecordTransformer transformer, int workers, int capacity, boolean ordered) {
+      this(transformer, null, workers, capacity, ordered);
+   }
+
+   /**
+    * Pipeline on the given executor.
+    *
+    * @param transformer - transformer of the records, shared by the workers
+    * @param executor    - runs the stages; it must run {@code workers + 2} tasks at the same time. When null, a pool
+    *                    owned by the pipeline is used.
+    * @param workers     - number of records transformed concurrently
+    * @param capacity    - maximum number of records in flight
+    * @param ordered     - true to publish the records in source order
+    */
+   public TransformPipeline(IRecordTransformer transformer, Executor executor, int workers, int capacity, boolean ordered) {
+      if (workers <= 0 || capacity <= 0) {
+         throw new ConnectIllegalArgumentException("RSC7820", "Invalid pipeline workers " + workers + " or capacity " + capacity);
+      }
+      if (executor instanceof ThreadPoolExecutor && ((ThreadPoolExecutor) executor).getMaximumPoolSize() < workers + 2) {
+         throw new ConnectIllegalArgumentException("RSC7820", "Pipeline executor runs fewer than " + (workers + 2) + " tasks at the same time");
+      }
+      this.transformer = transformer;
+      this.ownsExecutor = executor == null;
+      this.executor = executor != null ? executor : Executors.newCachedThreadPool(new PipelineThreadFactory());
+      this.workers = workers;
+      this.capacity = capacity;
+      this.ordered = ordered;
+      for (String stage : new String[]{PARSE, TRANSFORM, SERIALIZE}) {
+         stats.put(stage, new StageStats());
+      }
+   }
+
+   /**
+    * Run the pipeline until the source is exhausted.
+    *
+    * @param source     - collected items, read on one thread
+    * @param parser     - parses an item into a record
+    * @param serializer - serializes a transformed record
+    * @param sink       - publishes the serialized records
+    * @return number of records published
+    * @throws InterruptedException when interrupted while waiting for the pipeline
+    */
+   public <I, O> long run(Iterator<I> source, Parser<I> parser, Serializer<O> serializer, Sink<O> sink) throws InterruptedException {
+      return run(source, parser, serializer, sink, null);
+   }
+
+   /**
+    * Run the pipeline until the source is exhausted, reporting the mappings that failed for every record.
+    *
+    * @param source     - collected items, read on one thread
+    * @param parser     - parses an item into a record
+    * @param serializer - serializes a transformed record
+    * @param sink       - publishes the serialized records
+    * @param errorSink  - receives the mappings that failed for a record with its source sequence number, may be null
+    * @return number of records published
+    * @throws InterruptedException when interrupted while waiting for the pipeline
+    */
+   public <I, O> long run(Iterator<I> source, Parser<I> parser, Serializer<O> serializer, Sink<O> sink, ErrorSink errorSink)
+         throws InterruptedException {
+      Run<I, O> run = new Run<>(source, parser, serializer, sink, errorSink);
+      run.start();
+      run.await();
+      return run.published;
+   }
+
+   /**
+    * Latency of every stage, in pipeline order: {@value #PARSE}, {@value #TRANSFORM}, {@value #SERIALIZE}.
+    */
+   public Map<String, StageStats> getStageStats() {
+      return Collections.unmodifiableMap(stats);
+   }
+
+   @Override
+   public void close() {
+      if (ownsExecutor) {
+         ((ExecutorService) executor).shutdown();
+      }
+   }
+
+   private static final class Item {
+      private final long sequence;
+      private final IRecord record;
+      // Mappings that failed for the record, null when none failed or they are not collected.
+      private final TransformErrors errors;
+
+      private Item(long sequence, IRecord record, TransformErrors errors) {
+         this.sequence = sequence;
+         this.record = record;
+         this.errors = errors;
+      }
+   }
+
+   /**
+    * State of one run of the pipeline.
+    */
+   private final class Run<I, O> {
+      private final Iterator<I> source;
+      private final Parser<I> parser;
+      private final Serializer<O> serializer;
+      private final Sink<O> sink;
+      private final ErrorSink errorSink;
+      private final BlockingQueue<Item> parsed = new ArrayBlockingQueue<>(capacity);
+      private final BlockingQueue<Item> transformed = new ArrayBlockingQueue<>(capacity);
+      // Bounds the records between parse and publish, and so the records waiting for their turn when ordered.
+      private final Semaphore inFlight = new Semaphore(capacity);
+      private final AtomicInteger runningWorkers = new AtomicInteger(workers);
+      private final AtomicReference<Throwable> failure = new AtomicReference<>();
+      private final CountDownLatch done = new CountDownLatch(workers + 2);
+      private volatile boolean aborted;
+      private long published;
+
+      private Run(Iterator<I> source, Parser<I> parser, Serializer<O> serializer, Sink<O> sink, ErrorSink errorSink) {
+         this.source = source;
+         this.parser = parser;
+         this.serializer = serializer;
+         this.sink = sink;
+         this.errorSink = errorSink;
+      }
+
+      private void start() {
+         executor.execute(() -> runStage(this::parse));
+         for (int i = 0; i < workers; i++) {
+            executor.execute(() -> runStage(this::transform));
+         }
+         executor.execute(() -> runStage(this::serialize));
+      }
+
+      private void await() throws InterruptedException {
+         try {
+            done.await();
+         } catch (InterruptedException ex) {
+            aborted = true;
+            throw ex;
+         }
+         Throwable cause = failure.get();
+         if (cause != null) {
+            throw new ConnectRuntimeException("RSC7820", "Transform pipeline failed: " + cause.getMessage());
+         }
+      }
+
+      private void runStage(StageBody body) {
+         try {
+            body.run();
+         } catch (Throwable ex) {
+            failure.compareAndSet(null, ex);
+            aborted = true;
+         } finally {
+            done.countDown();
+         }
+      }
+
+      private void parse() throws Exception {
+         StageStats parseStats = stats.get(PARSE);
+         long sequence = 0;
+         try {
+            while (!aborted) {
+               long blocked = System.nanoTime();
+               if (!inFlight.tryAcquire(POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                  parseStats.recordBlocked(System.nanoTime() - blocked);
+                  continue;
+               }
+               parseStats.recordBlocked(System.nanoTime() - blocked);
+               long start = System.nanoTime();
+               if (!source.hasNext()) {
+                  inFlight.release();
+                  break;
+               }
+               IRecord record = parser.parse(source.next());
+               parseStats.record(System.nanoTime() - start);
+               put(parsed, new Item(sequence++, record, null), parseStats);
+            }
+         } finally {
+            for (int i = 0; i < workers; i++) {
+               put(parsed, END, parseStats);
+            }
+         }
+      }
+
+      private void transform() throws Exception {
+         StageStats transformStats = stats.get(TRANSFORM);
+         try {
+            for (Item item = take(parsed); item != END; item = take(parsed)) {
+               long start = System.nanoTime();
+               IRecord result = null;
+               TransformErrors errors = errorSink != null && transformer instanceof GDSNTransformer ? new TransformErrors() : null;
+               try {
+                  result = errors == null ? transformer.transform(item.record, null) : ((GDSNTransformer) transformer).transform(item.record, null, errors);
+               } catch (Exception ex) {
+                  pmLogger.error(Constants.RSCONNECT_SERVICE, "RSC7273", "Failed to transform record " + item.sequence + ": " + ex.getMessage());
+               }
+               transformStats.record(System.nanoTime() - start);
+               put(transformed, new Item(item.sequence, result, errors == null || errors.isEmpty() ? null : errors), transformStats);
+            }
+         } finally {
+            if (runningWorkers.decrementAndGet() == 0) {
+               put(transformed, END, transformStats);
+            }
+         }
+      }
+
+      private void serialize() throws Exception {
+         StageStats serializeStats = stats.get(SERIALIZE);
+         Map<Long, Item> pending = new HashMap<>();
+         long next = 0;
+         for (Item item = take(transformed); item != END; item = take(transformed)) {
+            if (!ordered) {
+               publish(item, serializeStats);
+               continue;
+            }
+            pending.put(item.sequence, item);
+            // A failed record still takes its turn, so the records after it are not held back.
+            while (pending.containsKey(next)) {
+               publish(pending.remove(next++), serializeStats);
+            }
+         }
+      }
+
+      private void publish(Item item, StageStats serializeStats) throws Exception {
+         try {
+            if (item.errors != null) {
+               errorSink.accept(item.sequence, item.errors);
+            }
+            if (item.record != null) {
+               long start = System.nanoTime();
+               sink.accept(serializer.serialize(item.record));
+               serializeStats.record(System.nanoTime() - start);
+               published++;
+            }
+         } finally {
+            inFlight.release();
+         }
+      }
+
+      private void put(BlockingQueue<Item> queue, Item item, StageStats stageStats) throws InterruptedException {
+         long start = System.nanoTime();
+         // Nothing is taken from the queues anymore once aborted.
+         while (!queue.offer(item, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (aborted) {
+               break;
+            }
+         }
+         stageStats.recordBlocked(System.nanoTime() - start);
+      }
+
+      private Item take(BlockingQueue<Item> queue) throws InterruptedException {
+         Item item;
+         while ((item = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+            if (aborted) {
+               return END;
+            }
+         }
+         return item;
+      }
+   }
+
+   private interface StageBody {
+      void run() throws Exception;
+   }
+
+   /**
+    * Latency of a pipeline stage: time spent processing records, and time spent blocked on a full downstream queue,
+    * or on the records in flight for the parse stage.
+    */
+   public static final class StageStats {
+      private final LongAdder count = new LongAdder();
+      private final LongAdder totalNanos = new LongAdder();
+      private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+      private final LongAdder blockedNanos = new LongAdder();
+
+      private void record(long nanos) {
+         count.increment();
+         totalNanos.add(nanos);
+         maxNanos.accumulate(nanos);
+      }
+
+      private void recordBlocked(long nanos) {
+         blockedNanos.add(nanos);
+      }
+
+      /**
+       * Number of records processed by the stage.
+       */
+      public long getCount() {
+         return count.sum();
+      }
+
+      public long getTotalNanos() {
+         return totalNanos.sum();
+      }
+
+      public double getAverageMicros() {
+         long records = count.sum();
+         return records == 0 ? 0 : totalNanos.sum() / 1000d / records;
+      }
+
+      public long getMaxNanos() {
+         return maxNanos.get();
+      }
+
+      /**
+       * Time the stage waited for downstream capacity; high values point at a slower downstream stage.
+       */
+      public long getBlockedNanos() {
+         return blockedNanos.sum();
+      }
+
+      @Override
+      public String toString() {
+         return "count=" + getCount() + ", averageMicros=" + String.format("%.1f", getAverageMicros()) + ", maxNanos=" + getMaxNanos()
+               + ", blockedNanos=" + getBlockedNanos();
+      }
+   }
+
+   private static final class PipelineThreadFactory implements ThreadFactory {
+      private final AtomicInteger threads = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+         Thread thread = new Thread(runnable, "gdsn-pipeline-" + threads.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      }
+   }
+}
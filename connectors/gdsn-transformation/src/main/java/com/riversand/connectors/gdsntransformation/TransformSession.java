@@ -0,0 +1,135 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scratch state of a single {@link GDSNTransformer#transform} call. It is created per call, which keeps the shared
+ * transformer free of per-record state while letting the buffers be reused for every value of the record.
+ */
+final class TransformSession {
+   private final SourceIndex sourceIndex;
+   private final TransformErrors errors;
+   private final OutputDocument output = new OutputDocument();
+   private final StringBuilder pathBuilder = new StringBuilder(128);
+   private final SourceValues sourceValues = new SourceValues();
+   private int[] indices = new int[4];
+   private int indexCount;
+   private final List<String> writes = new ArrayList<>();
+   private boolean recording;
+   private boolean failed;
+
+   /**
+    * @param sourceIndex - index over the record to transform
+    * @param errors      - receives the mappings that fail, may be null
+    */
+   TransformSession(SourceIndex sourceIndex, TransformErrors errors) {
+      this.sourceIndex = sourceIndex;
+      this.errors = errors;
+   }
+
+   /**
+    * Index over the record being transformed.
+    */
+   SourceIndex getSourceIndex() {
+      return sourceIndex;
+   }
+
+   /**
+    * Set the destination indices for a value: the parent (group or relationship) indices followed by the value
+    * index. Without parent indices the value index alone is used, and for single valued mappings under a parent
+    * the value index is left out.
+    *
+    * @param index         - index of the value
+    * @param collection    - true when the mapping emits one destination entry per value
+    * @param parentIndices - indices of the enclosing groups or relationship
+    * @param parentCount   - number of parent indices to use, may be 0
+    */
+   void setIndices(int index, boolean collection, int[] parentIndices, int parentCount) {
+      indexCount = 0;
+      if (parentCount > 0) {
+         for (int i = 0; i < parentCount; i++) {
+            addIndex(parentIndices[i]);
+         }
+         if (collection) {
+            addIndex(index);
+         }
+      } else {
+         addIndex(index);
+      }
+   }
+
+   private void addIndex(int index) {
+      if (indexCount == indices.length) {
+         indices = Arrays.copyOf(indices, indexCount * 2);
+      }
+      indices[indexCount++] = index;
+   }
+
+   /**
+    * Outbound document of the record being transformed.
+    */
+   OutputDocument getOutput() {
+      return output;
+   }
+
+   /**
+    * Holder for the values of the mapping being transformed.
+    */
+   SourceValues getSourceValues() {
+      return sourceValues;
+   }
+
+   /**
+    * Write a value to the outbound document at a destination, with the current indices.
+    *
+    * @param template - compiled destination
+    * @param value    - value to write
+    * @param type     - type of the value
+    */
+   void write(DestinationTemplate template, String value, String type) {
+      output.setValue(template, indices, indexCount, value, type);
+      if (recording) {
+         writes.add(template.render(pathBuilder, indices, indexCount));
+         writes.add(value);
+         writes.add(type);
+      }
+   }
+
+   /**
+    * Start recording the values written, for incremental transformation.
+    */
+   void startRecording() {
+      writes.clear();
+      recording = true;
+   }
+
+   /**
+    * Mark the transformation as failed: a mapping was not applied.
+    *
+    * @param mapping    - failed mapping
+    * @param contextKey - context the mapping was applied in, null for the entity data
+    * @param reason     - why the mapping failed
+    */
+   void fail(CompiledFieldMapping mapping, String contextKey, String reason) {
+      failed = true;
+      if (errors != null) {
+         errors.add(mapping, contextKey, reason);
+      }
+   }
+
+   boolean isFailed() {
+      return failed;
+   }
+
+   /**
+    * Stop recording.
+    *
+    * @return path, value and type of every value written since recording started
+    */
+   String[] stopRecording() {
+      recording = false;
+      return writes.toArray(new String[0]);
+   }
+}
@@ -0,0 +1,79 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BulkTransformTest {
+   private static final int RECORDS = 40;
+   private static final int FAILING_LINE = 12;
+   private static final int PARTIAL_LINE = 21;
+   private static final Gson gson = GsonBuilder.getGsonInstance();
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static JsonObject getEntity(int index) {
+      JsonObject entity = TransformFixtures.getEntity(index);
+      return index == PARTIAL_LINE ? TransformFixtures.removeLocale(entity) : entity;
+   }
+
+   /**
+    * One entity per line, with a blank line, a line that is not an entity and an entity with a failing mapping.
+    */
+   private Path writeInput() throws Exception {
+      Path input = folder.newFile("input.ndjson").toPath();
+      TransformFixtures.writeLines(input, RECORDS, i -> i == FAILING_LINE ? "{\"type\": "
+            : gson.toJson(getEntity(i)) + (i == 3 ? System.lineSeparator() : ""));
+      return input;
+   }
+
+   @Test
+   public void testOrderedNdjson() throws Exception {
+      Path input = writeInput();
+      Path output = folder.getRoot().toPath().resolve("output.ndjson");
+      List<BulkTransform.Progress> reports = new ArrayList<>();
+      try (GDSNTransformer transformer = TransformFixtures.getTransformer();
+           BulkTransform bulkTransform = new BulkTransform(transformer, 3, 4096)) {
+         BulkTransform.Progress progress = bulkTransform.run(input, output, BulkTransform.OutputFormat.NDJSON, reports::add);
+         assertEquals(RECORDS - 1, progress.getRecords());
+         assertEquals(1, progress.getFailed());
+         assertEquals(1, progress.getPartial());
+         assertEquals(Files.size(input), progress.getBytes());
+         assertTrue(reports.size() > 1);
+
+         assertEquals(TransformFixtures.getExpected(transformer, RECORDS, FAILING_LINE, BulkTransformTest::getEntity),
+               Files.readAllLines(output, StandardCharsets.UTF_8));
+      }
+   }
+
+   @Test
+   public void testGdsnOutput() throws Exception {
+      Path input = writeInput();
+      Path output = folder.getRoot().toPath().resolve("output.xml");
+      try (GDSNTransformer transformer = TransformFixtures.getTransformer();
+           BulkTransform bulkTransform = new BulkTransform(transformer, 2, 1 << 20)) {
+         bulkTransform.run(input, output, BulkTransform.OutputFormat.GDSN, null);
+      }
+      assertEquals((double) (RECORDS - 1), XPathFactory.newInstance().newXPath().evaluate("count(/*/catalogueItem/tradeItem)",
+            DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(output.toFile()), XPathConstants.NUMBER));
+   }
+}
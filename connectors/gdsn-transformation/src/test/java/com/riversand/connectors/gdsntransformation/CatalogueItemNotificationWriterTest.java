@@ -0,0 +1,94 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.config.RSConnectContext;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.common.helpers.RSExtensionConnectContextSerializer;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+import static org.junit.Assert.assertEquals;
+
+public class CatalogueItemNotificationWriterTest {
+   private static final Gson gson = GsonBuilder.getGsonInstance();
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   private static JsonObject getEntity() {
+      return gson.fromJson(new InputStreamReader(CatalogueItemNotificationWriterTest.class.getResourceAsStream("sourceEntity.json"), StandardCharsets.UTF_8), JsonObject.class);
+   }
+
+   private static Document parse(Path file) throws Exception {
+      DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+      factory.setNamespaceAware(true);
+      return factory.newDocumentBuilder().parse(file.toFile());
+   }
+
+   @Test
+   public void testElementsAttributesAndText() throws Exception {
+      Path file = folder.getRoot().toPath().resolve("cin.xml");
+      JsonObject header = gson.fromJson("{\"isReload\": false, \"catalogueItemNotificationIdentification\": {\"entityIdentification\": \"cin-1\"}}", JsonObject.class);
+      JsonObject item = gson.fromJson("{\"gtin\": \"0001\", \"empty\": null, \"description\": ["
+            + "{\"@languageCode\": \"en\", \"__value__\": \"Dog food\"}, {\"@languageCode\": \"fr\", \"@unset\": null, \"__value__\": \"Croquettes\"}],"
+            + "\"size\": {\"@measurementUnitCode\": \"KGM\", \"__value__\": 2}}", JsonObject.class);
+      try (CatalogueItemNotificationWriter writer = CatalogueItemNotificationWriter.open(file, header)) {
+         writer.write(new JsonRecord(item, null));
+         assertEquals(1, writer.getCount());
+      }
+
+      Document document = parse(file);
+      assertEquals(CatalogueItemNotificationWriter.NAMESPACE, document.getDocumentElement().getNamespaceURI());
+      assertEquals("catalogueItemNotification", document.getDocumentElement().getLocalName());
+      XPath xpath = XPathFactory.newInstance().newXPath();
+      assertEquals("cin-1", xpath.evaluate("/*/catalogueItemNotificationIdentification/entityIdentification", document));
+      assertEquals("false", xpath.evaluate("/*/isReload", document));
+      assertEquals("0001", xpath.evaluate("/*/catalogueItem/tradeItem/gtin", document));
+      assertEquals(0.0, xpath.evaluate("count(/*/catalogueItem/tradeItem/empty)", document, XPathConstants.NUMBER));
+      assertEquals(2.0, xpath.evaluate("count(/*/catalogueItem/tradeItem/description)", document, XPathConstants.NUMBER));
+      assertEquals("Croquettes", xpath.evaluate("/*/catalogueItem/tradeItem/description[@languageCode='fr']", document));
+      assertEquals(1.0, xpath.evaluate("count(/*/catalogueItem/tradeItem/description[2]/@*)", document, XPathConstants.NUMBER));
+      assertEquals("KGM", xpath.evaluate("/*/catalogueItem/tradeItem/size/@measurementUnitCode", document));
+      assertEquals("2", xpath.evaluate("/*/catalogueItem/tradeItem/size", document));
+   }
+
+   @Test
+   public void testStreamingTransform() throws Exception {
+      Path file = folder.getRoot().toPath().resolve("batch.xml");
+      JsonArray entities = new JsonArray();
+      entities.add(getEntity());
+      entities.add(getEntity());
+      RSConnectContext connectContext = RSExtensionConnectContextSerializer.fromJson(null, CatalogueItemNotificationWriterTest.class.getResourceAsStream("transformProfile.json"));
+      String gtin;
+      try (GDSNTransformer transformer = new GDSNTransformer(connectContext);
+           CatalogueItemNotificationWriter writer = CatalogueItemNotificationWriter.open(file, null)) {
+         transformer.transform(new StringReader(gson.toJson(entities)), writer);
+         assertEquals(2, writer.getCount());
+         gtin = ((JsonRecord) transformer.transform(new JsonRecord(getEntity(), null), null)).getValue("gtin");
+      }
+
+      Document document = parse(file);
+      XPath xpath = XPathFactory.newInstance().newXPath();
+      assertEquals(2.0, xpath.evaluate("count(/*/catalogueItem/tradeItem)", document, XPathConstants.NUMBER));
+      assertEquals(gtin, xpath.evaluate("/*/catalogueItem[2]/tradeItem/gtin", document));
+      assertEquals("en", xpath.evaluate("(//animalNutritionalClaim)[1]/@languageCode", document));
+      assertEquals("yes", xpath.evaluate("(//animalNutritionalClaim)[1]", document));
+   }
+}
@@ -0,0 +1,59 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ContextResolverTest {
+   private static final String ENTITY = "{\"id\": \"e1\", \"type\": \"smtradeitem\", \"data\": {"
+         + "\"attributes\": {\"gtin\": {\"values\": [{\"value\": \"0001\"}]}},"
+         + "\"contexts\": [{\"context\": {\"channel\": \"us\"}, \"attributes\": {}},"
+         + "{\"context\": {\"channel\": \"de\"}, \"attributes\": {}}]}}";
+
+   private static JsonRecord getRecord(String json) {
+      return new JsonRecord(GsonBuilder.getGsonInstance().fromJson(json, JsonObject.class), null);
+   }
+
+   private static List<ResolvedContext> resolve(ContextResolver resolver, JsonRecord record) {
+      return resolver.resolve(new SourceIndex(record));
+   }
+
+   @Test
+   public void testResolve() {
+      ContextResolver resolver = new ContextResolver("JSON", "JSON", null);
+      List<ResolvedContext> contexts = resolve(resolver, getRecord(ENTITY));
+      assertEquals(3, contexts.size());
+      assertNull(contexts.get(0).getContextKey());
+
+      List<ResolvedContext> entityOnly = resolve(resolver, getRecord("{\"id\": \"e2\", \"data\": {\"attributes\": {}}}"));
+      assertEquals(1, entityOnly.size());
+   }
+
+   @Test
+   public void testSameShape() {
+      ContextResolver resolver = new ContextResolver("JSON", "JSON", null);
+      JsonRecord first = getRecord(ENTITY);
+      List<ResolvedContext> expected = resolve(resolver, first);
+      // Changing a resolved record does not change the definitions cached for its shape.
+      first.getJsonObject().getAsJsonObject("data").getAsJsonArray("contexts").get(0).getAsJsonObject()
+            .getAsJsonObject("context").addProperty("channel", "fr");
+
+      List<ResolvedContext> actual = resolve(resolver, getRecord(ENTITY));
+      assertEquals(expected.size(), actual.size());
+      for (int i = 0; i < expected.size(); i++) {
+         assertEquals(expected.get(i).getContextKey(), actual.get(i).getContextKey());
+      }
+      List<ResolvedContext> uncached = resolve(new ContextResolver("JSON", "JSON", null), getRecord(ENTITY));
+      for (int i = 0; i < uncached.size(); i++) {
+         assertEquals(uncached.get(i).getContextKey(), actual.get(i).getContextKey());
+      }
+   }
+}
@@ -0,0 +1,52 @@
+package com.riversand.connectors.gdsntransformation;
+
+import org.junit.Test;
+
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
+
+import static org.junit.Assert.assertEquals;
+
+public class DestinationTemplateTest {
+   private final StringBuilder builder = new StringBuilder();
+
+   @Test
+   public void testPath() {
+      DestinationTemplate template = DestinationTemplate.compile("@path(allergen[%d].allergenTypeCode[%d].__value__)");
+      assertEquals(2, template.getSlotCount());
+      assertEquals("allergen[1].allergenTypeCode[12].__value__", template.render(builder, new int[]{1, 12}, 2));
+   }
+
+   @Test
+   public void testRelPath() {
+      DestinationTemplate template = DestinationTemplate.compile("@relPath(nextLowerLevelTradeItemInformation.childTradeItem[%d], gtin)");
+      assertEquals(String.format(GDSNFieldMapMacro.getRelPath("@relPath(nextLowerLevelTradeItemInformation.childTradeItem[%d], gtin)"), 3),
+            template.render(builder, new int[]{3}, 1));
+   }
+
+   @Test
+   public void testPlainPathAndAttribute() {
+      assertEquals("gtin", DestinationTemplate.compile("@attr(gtin)").render(builder, new int[]{0}, 1));
+      assertEquals("tradeItemUnitDescriptorCode[5].__value__", DestinationTemplate.compile("tradeItemUnitDescriptorCode[%d].__value__").render(builder, new int[]{5}, 1));
+      assertEquals("displayUnitInformation[0].hasDisplayReadyPackaging",
+            DestinationTemplate.compile("displayUnitInformation[0].hasDisplayReadyPackaging").render(builder, new int[0], 0));
+   }
+
+   @Test
+   public void testDualDestination() {
+      DestinationTemplate[] fields = DestinationTemplate.compileFields("@path(feedingAmount[%d].@measurementUnitCode#@#feedingAmount[%d].__value__)");
+      assertEquals(2, fields.length);
+      assertEquals("feedingAmount[4].@measurementUnitCode", fields[0].render(builder, new int[]{4}, 1));
+      assertEquals("feedingAmount[4].__value__", fields[1].render(builder, new int[]{4}, 1));
+   }
+
+   @Test
+   public void testAppend() {
+      DestinationTemplate template = DestinationTemplate.compile("@path(claim[%d])").append(".@languageCode");
+      assertEquals("claim[2].@languageCode", template.render(builder, new int[]{2, 7}, 2));
+   }
+
+   @Test(expected = ConnectIllegalArgumentException.class)
+   public void testMissingIndex() {
+      DestinationTemplate.compile("@path(a[%d].b[%d])").render(builder, new int[]{1}, 1);
+   }
+}
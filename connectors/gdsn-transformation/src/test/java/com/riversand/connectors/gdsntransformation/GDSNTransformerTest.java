@@ -1,16 +1,29 @@
 package com.riversand.connectors.gdsntransformation;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import org.junit.Test;
 
+import com.google.common.base.Strings;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 
 import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManager;
 import com.riversand.dataplatform.ps.diagnosticmanager.ProfilerManagerLogger;
 import com.riversand.rsconnect.common.config.RSConnectContext;
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
 import com.riversand.rsconnect.common.helpers.GsonBuilder;
 import com.riversand.rsconnect.common.helpers.RSExtensionConnectContextSerializer;
 import com.riversand.rsconnect.interfaces.models.IRecord;
@@ -19,7 +32,10 @@ import com.riversand.rsconnect.interfaces.models.JsonRecord;
 import static com.riversand.connectors.extension.helpers.Constants.LogCodes.RSC_7273;
 import static com.riversand.rsconnect.interfaces.constants.Constants.Services.RSCONNECT_SERVICE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class GDSNTransformerTest {
    private static ProfilerManagerLogger pmLogger = ProfilerManager.getLogger(GDSNTransformerTest.class);
@@ -65,4 +81,383 @@ public class GDSNTransformerTest {
       JsonObject expectedTransformedEntity = getObject("expectedTransformedRelationships.json");
       validate(inboundRecord, expectedTransformedEntity, "relationshipAttributeProfile.json");
    }
+
+   @Test
+   public void testRelationshipMappingsBoundToRelationship() {
+      JsonObject entityObject = getObject("sourceEntity.json");
+      JsonObject relationships = entityObject.getAsJsonObject("data").getAsJsonObject("relationships");
+      // Same attributes under another relationship: @relAttr(childgtins, ...) mappings must not pick them up.
+      JsonArray components = relationships.getAsJsonArray("childgtins").deepCopy();
+      components.get(0).getAsJsonObject().getAsJsonObject("attributes").getAsJsonObject("totalQuantityOfNextLowerLevelTradeItem")
+            .getAsJsonArray("values").get(0).getAsJsonObject().addProperty("value", "99");
+      relationships.add("components", components);
+      JsonObject expectedTransformedEntity = getObject("expectedTransformedRelationships.json");
+      validate(new JsonRecord(entityObject, null), expectedTransformedEntity, "relationshipAttributeProfile.json");
+   }
+
+   @Test
+   public void testTransformAll() throws Exception {
+      JsonObject entityObject = getObject("sourceEntity.json");
+      JsonObject expectedTransformedEntity = getObject("expectedTransformedEntity.json");
+      int invalidRecord = 17;
+      List<IRecord> records = new ArrayList<>();
+      for (int i = 0; i < 64; i++) {
+         if (i == invalidRecord) {
+            records.add(new JsonRecord(new JsonObject(), null));
+            continue;
+         }
+         JsonObject record = entityObject.deepCopy();
+         record.getAsJsonObject("data").getAsJsonObject("attributes").getAsJsonObject("gtin").getAsJsonArray("values")
+               .get(0).getAsJsonObject().addProperty("value", "gtin-" + i);
+         records.add(new JsonRecord(record, null));
+      }
+
+      InputStream contextStream = GDSNTransformerTest.class.getResourceAsStream("transformProfile.json");
+      RSConnectContext connectContext = RSExtensionConnectContextSerializer.fromJson(null, contextStream);
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try (GDSNTransformer gdsnTransformer = new GDSNTransformer(connectContext, pool)) {
+         List<IRecord> outboundRecords = gdsnTransformer.transformAll(records);
+         assertEquals(records.size(), outboundRecords.size());
+         for (int i = 0; i < records.size(); i++) {
+            if (i == invalidRecord) {
+               assertNull(outboundRecords.get(i));
+               continue;
+            }
+            JsonObject expected = expectedTransformedEntity.deepCopy();
+            expected.addProperty("gtin", "gtin-" + i);
+            assertEquals(expected, ((JsonRecord) outboundRecords.get(i)).getJsonObject());
+         }
+      } finally {
+         pool.shutdown();
+      }
+   }
+
+   private static void validateStreaming(String profileName) throws Exception {
+      Gson gson = GsonBuilder.getGsonInstance();
+      JsonObject entityObject = getObject("sourceEntity.json");
+      InputStream contextStream = GDSNTransformerTest.class.getResourceAsStream(profileName);
+      RSConnectContext connectContext = RSExtensionConnectContextSerializer.fromJson(null, contextStream);
+      try (GDSNTransformer gdsnTransformer = new GDSNTransformer(connectContext)) {
+         String expected = gson.toJson(((JsonRecord) gdsnTransformer.transform(new JsonRecord(entityObject.deepCopy(), null), null)).getJsonObject());
+
+         StringWriter single = new StringWriter();
+         gdsnTransformer.transform(new InputStreamReader(GDSNTransformerTest.class.getResourceAsStream("sourceEntity.json"), Charset.defaultCharset()), single);
+         assertEquals(expected, single.toString());
+
+         JsonArray entities = new JsonArray();
+         entities.add(entityObject.deepCopy());
+         entities.add(entityObject.deepCopy());
+         StringWriter batch = new StringWriter();
+         gdsnTransformer.transform(new StringReader(gson.toJson(entities)), batch);
+         assertEquals("[" + expected + "," + expected + "]", batch.toString());
+      }
+   }
+
+   @Test
+   public void testStreamingTransform() throws Exception {
+      validateStreaming("transformProfile.json");
+      validateStreaming("nestedAttributeProfile.json");
+      validateStreaming("relationshipAttributeProfile.json");
+   }
+
+   @Test
+   public void testSourceProjection() throws Exception {
+      Gson gson = GsonBuilder.getGsonInstance();
+      try (GDSNTransformer gdsnTransformer = new GDSNTransformer(connectContext("transformProfile.json"))) {
+         SourceProjection projection = gdsnTransformer.getSourceProjection();
+         assertTrue(projection.isAttributeRead("gtin"));
+         assertTrue(projection.isAttributeRead("sm_allergen"));
+         assertFalse(projection.isAttributeRead("sm_unmapped"));
+         assertFalse(projection.isRelationshipsRead());
+         assertEquals(0, projection.toFields().getAsJsonArray("relationships").size());
+      }
+      try (GDSNTransformer gdsnTransformer = new GDSNTransformer(connectContext("relationshipAttributeProfile.json"))) {
+         SourceProjection projection = gdsnTransformer.getSourceProjection();
+         assertEquals(Collections.singleton("childgtins"), projection.getRelationshipNames());
+
+         JsonObject entityObject = getObject("sourceEntity.json");
+         JsonObject relationships = entityObject.getAsJsonObject("data").getAsJsonObject("relationships");
+         relationships.add("substitutes", relationships.get("childgtins").deepCopy());
+         JsonObject trimmed = projection.read(gson.newJsonReader(new StringReader(gson.toJson(entityObject))));
+         JsonObject trimmedRelationships = trimmed.getAsJsonObject("data").getAsJsonObject("relationships");
+         assertTrue(trimmedRelationships.has("childgtins"));
+         assertFalse(trimmedRelationships.has("substitutes"));
+         assertEquals(gson.toJson(((JsonRecord) gdsnTransformer.transform(new JsonRecord(entityObject, null), null)).getJsonObject()),
+               gson.toJson(((JsonRecord) gdsnTransformer.transform(new JsonRecord(trimmed, null), null)).getJsonObject()));
+      }
+   }
+
+   private static RSConnectContext getContext(String profileName, String setting, String value) {
+      JsonObject profile = getObject(profileName);
+      profile.getAsJsonObject("connectProfile").getAsJsonObject("transform").getAsJsonObject("settings")
+            .getAsJsonObject("additionalSettings").addProperty(setting, value);
+      byte[] json = GsonBuilder.getGsonInstance().toJson(profile).getBytes(StandardCharsets.UTF_8);
+      return RSExtensionConnectContextSerializer.fromJson(null, new ByteArrayInputStream(json));
+   }
+
+   @Test
+   public void testRecordPathSources() throws Exception {
+      // Sources given without @attr macro are read through the record, with the same output.
+      JsonObject profile = getObject("transformProfile.json");
+      for (JsonElement mapping : profile.getAsJsonObject("connectProfile").getAsJsonObject("transform").getAsJsonArray("fieldMap")) {
+         JsonObject mappingObject = mapping.getAsJsonObject();
+         String source = mappingObject.get("source").getAsString();
+         if (!mappingObject.get("type").getAsString().startsWith("oneTo")) {
+            mappingObject.addProperty("source", source.substring("@attr(".length(), source.length() - 1));
+         }
+      }
+      byte[] json = GsonBuilder.getGsonInstance().toJson(profile).getBytes(StandardCharsets.UTF_8);
+      try (GDSNTransformer attributeTransformer = new GDSNTransformer(connectContext("transformProfile.json"));
+           GDSNTransformer recordTransformer = new GDSNTransformer(RSExtensionConnectContextSerializer.fromJson(null, new ByteArrayInputStream(json)))) {
+         assertEquals(((JsonRecord) attributeTransformer.transform(new JsonRecord(getObject("sourceEntity.json"), null), null)).getJsonObject(),
+               ((JsonRecord) recordTransformer.transform(new JsonRecord(getObject("sourceEntity.json"), null), null)).getJsonObject());
+      }
+   }
+
+   @Test
+   public void testIncrementalTransform() throws Exception {
+      Gson gson = GsonBuilder.getGsonInstance();
+      JsonObject entityObject = getObject("sourceEntity.json");
+      JsonObject changedObject = entityObject.deepCopy();
+      changedObject.getAsJsonObject("data").getAsJsonObject("attributes").getAsJsonObject("gtin").getAsJsonArray("values")
+            .get(0).getAsJsonObject().addProperty("value", "changed-gtin");
+
+      try (GDSNTransformer fullTransformer = new GDSNTransformer(connectContext("transformProfile.json"));
+           GDSNTransformer incrementalTransformer = new GDSNTransformer(getContext("transformProfile.json", GDSNTransformer.INCREMENTAL_CACHE_SETTING, "16"))) {
+         String expected = gson.toJson(((JsonRecord) fullTransformer.transform(new JsonRecord(entityObject.deepCopy(), null), null)).getJsonObject());
+         String expectedChanged = gson.toJson(((JsonRecord) fullTransformer.transform(new JsonRecord(changedObject.deepCopy(), null), null)).getJsonObject());
+
+         TransformDelta first = incrementalTransformer.transformDelta(new JsonRecord(entityObject.deepCopy(), null), null);
+         assertEquals(expected, gson.toJson(((JsonRecord) first.getDocument()).getJsonObject()));
+         assertEquals(expected, gson.toJson(((JsonRecord) first.getChanges()).getJsonObject()));
+
+         TransformDelta unchanged = incrementalTransformer.transformDelta(new JsonRecord(entityObject.deepCopy(), null), null);
+         assertTrue(unchanged.isUnchanged());
+         assertEquals(expected, gson.toJson(((JsonRecord) unchanged.getDocument()).getJsonObject()));
+
+         // Only the changed mapping is recomputed, the output of the others is replayed in place.
+         TransformDelta changed = incrementalTransformer.transformDelta(new JsonRecord(changedObject.deepCopy(), null), null);
+         assertEquals(expectedChanged, gson.toJson(((JsonRecord) changed.getDocument()).getJsonObject()));
+         JsonObject changes = new JsonObject();
+         changes.addProperty("gtin", "changed-gtin");
+         assertEquals(changes, ((JsonRecord) changed.getChanges()).getJsonObject());
+         assertTrue(changed.getRemovedPaths().isEmpty());
+         assertEquals(expectedChanged, gson.toJson(((JsonRecord) incrementalTransformer.transform(new JsonRecord(changedObject.deepCopy(), null), null)).getJsonObject()));
+
+         // A removed value is reported by path.
+         JsonObject removedObject = changedObject.deepCopy();
+         removedObject.getAsJsonObject("data").getAsJsonObject("attributes").remove("gtin");
+         TransformDelta removed = incrementalTransformer.transformDelta(new JsonRecord(removedObject, null), null);
+         assertNull(removed.getChanges());
+         assertEquals(Collections.singletonList("gtin"), removed.getRemovedPaths());
+         assertNull(removed.getDocument().getValue("gtin"));
+      }
+   }
+
+   @Test
+   public void testOutputCache() throws Exception {
+      Gson gson = GsonBuilder.getGsonInstance();
+      JsonObject entityObject = getObject("sourceEntity.json");
+      // Same entity with its members in reverse order.
+      JsonObject reorderedObject = new JsonObject();
+      List<String> names = new ArrayList<>(entityObject.keySet());
+      Collections.reverse(names);
+      for (String name : names) {
+         reorderedObject.add(name, entityObject.get(name).deepCopy());
+      }
+
+      try (GDSNTransformer fullTransformer = new GDSNTransformer(connectContext("transformProfile.json"));
+           GDSNTransformer cachingTransformer = new GDSNTransformer(getContext("transformProfile.json", GDSNTransformer.OUTPUT_CACHE_SETTING, "16"))) {
+         String expected = gson.toJson(((JsonRecord) fullTransformer.transform(new JsonRecord(entityObject.deepCopy(), null), null)).getJsonObject());
+
+         JsonObject first = ((JsonRecord) cachingTransformer.transform(new JsonRecord(entityObject.deepCopy(), null), null)).getJsonObject();
+         assertEquals(expected, gson.toJson(first));
+         // Changing a returned output does not change the cached one.
+         first.addProperty("gtin", "changed-gtin");
+         JsonObject second = ((JsonRecord) cachingTransformer.transform(new JsonRecord(reorderedObject, null), null)).getJsonObject();
+         assertEquals(expected, gson.toJson(second));
+
+         JsonObject changedObject = entityObject.deepCopy();
+         changedObject.getAsJsonObject("data").getAsJsonObject("attributes").getAsJsonObject("gtin").getAsJsonArray("values")
+               .get(0).getAsJsonObject().addProperty("value", "changed-gtin");
+         assertEquals("changed-gtin", cachingTransformer.transform(new JsonRecord(changedObject, null), null).getValue("gtin"));
+
+         TransformMetrics metrics = cachingTransformer.getMetrics();
+         assertEquals(1, metrics.getOutputCacheHits());
+         assertEquals(2, metrics.getOutputCacheMisses());
+         assertEquals(0, fullTransformer.getMetrics().getOutputCacheHits() + fullTransformer.getMetrics().getOutputCacheMisses());
+      }
+   }
+
+   @Test
+   public void testOutputCacheEviction() {
+      JsonObject document = new JsonObject();
+      document.addProperty("gtin", "00012345678905");
+      long weight = document.toString().length();
+
+      OutputCache cache = new OutputCache("plan", 2, 3 * weight);
+      JsonObject[] inbound = new JsonObject[3];
+      for (int i = 0; i < inbound.length; i++) {
+         inbound[i] = new JsonObject();
+         inbound[i].addProperty("id", "entity" + i);
+      }
+      cache.put(cache.getKey(inbound[0]), document);
+      cache.put(cache.getKey(inbound[1]), document);
+      assertNotNull(cache.get(cache.getKey(inbound[0])));
+      // The least recently used output is evicted first.
+      cache.put(cache.getKey(inbound[2]), document);
+      assertEquals(2, cache.size());
+      assertNull(cache.get(cache.getKey(inbound[1])));
+      assertEquals(document, cache.get(cache.getKey(inbound[0])));
+      assertEquals(2 * weight, cache.getWeight());
+      // The cached snapshot does not follow changes of the output put or of the outputs got.
+      cache.get(cache.getKey(inbound[0])).addProperty("gtin", "changed-gtin");
+      JsonObject changed = document.deepCopy();
+      cache.put(cache.getKey(inbound[2]), changed);
+      changed.addProperty("gtin", "changed-gtin");
+      assertEquals(document, cache.get(cache.getKey(inbound[0])));
+      assertEquals(document, cache.get(cache.getKey(inbound[2])));
+
+      // Outputs are keyed by plan version too, and bounded by weight.
+      OutputCache otherPlan = new OutputCache("other", 16, 2 * weight);
+      assertFalse(otherPlan.getKey(inbound[0]).equals(cache.getKey(inbound[0])));
+      for (JsonObject entity : inbound) {
+         otherPlan.put(otherPlan.getKey(entity), document);
+      }
+      assertEquals(2, otherPlan.size());
+      JsonObject heavy = new JsonObject();
+      heavy.addProperty("gtin", Strings.repeat("0", (int) (2 * weight)));
+      otherPlan.put(otherPlan.getKey(inbound[0]), heavy);
+      assertNull(otherPlan.get(otherPlan.getKey(inbound[0])));
+      assertEquals(2 * weight, otherPlan.getWeight());
+   }
+
+   @Test
+   public void testMappingErrors() throws Exception {
+      JsonObject profile = getObject("transformProfile.json");
+      JsonObject transform = profile.getAsJsonObject("connectProfile").getAsJsonObject("transform");
+      // Failing mappings come first: every mapping after them is still applied.
+      JsonArray fieldMap = new JsonArray();
+      for (String source : new String[]{"brokenCode", "brokenName"}) {
+         JsonObject mapping = new JsonObject();
+         mapping.addProperty("id", source);
+         mapping.addProperty("source", source);
+         mapping.addProperty("destination", "@path(" + source + ")");
+         mapping.addProperty("entityType", "smtradeitem");
+         fieldMap.add(mapping);
+      }
+      fieldMap.addAll(transform.getAsJsonArray("fieldMap"));
+      transform.add("fieldMap", fieldMap);
+      byte[] json = GsonBuilder.getGsonInstance().toJson(profile).getBytes(StandardCharsets.UTF_8);
+
+      try (GDSNTransformer fullTransformer = new GDSNTransformer(connectContext("transformProfile.json"));
+           GDSNTransformer transformer = new GDSNTransformer(RSExtensionConnectContextSerializer.fromJson(null, new ByteArrayInputStream(json)))) {
+         JsonObject expected = ((JsonRecord) fullTransformer.transform(new JsonRecord(getObject("sourceEntity.json"), null), null)).getJsonObject();
+
+         TransformErrors errors = new TransformErrors();
+         IRecord outboundRecord = transformer.transform(new BrokenRecord(getBrokenEntity()), null, errors);
+         assertEquals(expected, ((JsonRecord) outboundRecord).getJsonObject());
+         assertEquals(2, errors.getErrors().size());
+         TransformErrors.MappingError error = errors.getErrors().get(0);
+         assertEquals("brokenCode", error.getMappingId());
+         assertEquals("brokenCode", error.getSource());
+         assertNull(error.getContextKey());
+         assertEquals("broken source brokenCode", error.getReason());
+         assertEquals(Long.valueOf(1), transformer.getMetrics().getMappingErrors().get("0: brokenCode -> @path(brokenCode)"));
+
+         // Errors beyond the cap are only counted.
+         TransformErrors capped = new TransformErrors(1);
+         transformer.transform(new BrokenRecord(getBrokenEntity()), null, capped);
+         assertEquals(1, capped.getErrors().size());
+         assertEquals(1, capped.getDroppedCount());
+         assertEquals(Long.valueOf(2), transformer.getMetrics().getMappingErrors().get("0: brokenCode -> @path(brokenCode)"));
+      }
+   }
+
+   /**
+    * Source entity with broken attributes, whose values have no value field and are read through the record.
+    */
+   private static JsonObject getBrokenEntity() {
+      JsonObject entityObject = getObject("sourceEntity.json");
+      for (String attributeName : new String[]{"brokenCode", "brokenName"}) {
+         JsonObject value = new JsonObject();
+         value.addProperty("source", "internal");
+         JsonArray values = new JsonArray();
+         values.add(value);
+         JsonObject attribute = new JsonObject();
+         attribute.add("values", values);
+         entityObject.getAsJsonObject("data").getAsJsonObject("attributes").add(attributeName, attribute);
+      }
+      return entityObject;
+   }
+
+   /**
+    * Record failing to read the broken sources.
+    */
+   private static final class BrokenRecord extends JsonRecord {
+      private BrokenRecord(JsonObject entityObject) {
+         super(entityObject, null);
+      }
+
+      @Override
+      public String getValue(String path) {
+         if (path.contains("broken")) {
+            throw new IllegalStateException("broken source " + path.substring(path.indexOf("broken"), path.indexOf('.', path.indexOf("broken"))));
+         }
+         return super.getValue(path);
+      }
+   }
+
+   @Test
+   public void testMissingLocale() throws Exception {
+      JsonObject sourceEntity = TransformFixtures.removeLocale(getObject("sourceEntity.json"));
+      JsonObject expected = getObject("expectedTransformedEntity.json");
+      expected.getAsJsonArray("tradeItemInformation").get(0).getAsJsonObject().getAsJsonArray("extension").get(0).getAsJsonObject()
+            .getAsJsonArray("animalFeedingModule").get(0).getAsJsonObject().remove("animalNutritionalClaim");
+
+      try (GDSNTransformer transformer = new GDSNTransformer(connectContext("transformProfile.json"))) {
+         TransformErrors errors = new TransformErrors();
+         IRecord outboundRecord = transformer.transform(new JsonRecord(sourceEntity, null), null, errors);
+         // The value without language code is not written.
+         assertEquals(expected, ((JsonRecord) outboundRecord).getJsonObject());
+         assertEquals(1, errors.getErrors().size());
+         assertEquals("@attr(sm_animalnutritionalclaim)", errors.getErrors().get(0).getSource());
+         assertEquals("no locale on localizable value yes", errors.getErrors().get(0).getReason());
+      }
+   }
+
+   @Test
+   public void testTransformAllErrors() throws Exception {
+      List<IRecord> records = new ArrayList<>();
+      List<TransformErrors> errors = new ArrayList<>();
+      for (int i = 0; i < 16; i++) {
+         JsonObject sourceEntity = getObject("sourceEntity.json");
+         if (i % 4 == 1) {
+            TransformFixtures.removeLocale(sourceEntity);
+         }
+         records.add(new JsonRecord(sourceEntity, null));
+         errors.add(new TransformErrors());
+      }
+      ForkJoinPool pool = new ForkJoinPool(4);
+      try (GDSNTransformer transformer = new GDSNTransformer(connectContext("transformProfile.json"), pool)) {
+         List<IRecord> outboundRecords = transformer.transformAll(records, null, errors);
+         for (int i = 0; i < records.size(); i++) {
+            assertNotNull(outboundRecords.get(i));
+            assertEquals(i % 4 == 1 ? 1 : 0, errors.get(i).getErrors().size());
+         }
+      } finally {
+         pool.shutdown();
+      }
+   }
+
+   @Test(expected = ConnectIllegalArgumentException.class)
+   public void testTransformDeltaNotEnabled() throws Exception {
+      try (GDSNTransformer gdsnTransformer = new GDSNTransformer(connectContext("transformProfile.json"))) {
+         gdsnTransformer.transformDelta(new JsonRecord(getObject("sourceEntity.json"), null), null);
+      }
+   }
+
+   private static RSConnectContext connectContext(String profileName) {
+      return RSExtensionConnectContextSerializer.fromJson(null, GDSNTransformerTest.class.getResourceAsStream(profileName));
+   }
 }
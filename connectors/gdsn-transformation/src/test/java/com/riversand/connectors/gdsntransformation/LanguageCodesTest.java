@@ -0,0 +1,32 @@
+package com.riversand.connectors.gdsntransformation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LanguageCodesTest {
+   @Test
+   public void testLanguageCode() {
+      assertEquals("en", LanguageCodes.get("en-US"));
+      assertEquals("fr", LanguageCodes.get("fr-CA"));
+      assertEquals("zh", LanguageCodes.get("zh-Hant-TW"));
+      assertEquals("", LanguageCodes.get(""));
+      assertSame(LanguageCodes.get("de-DE"), LanguageCodes.get("de-DE"));
+   }
+
+   @Test
+   public void testMissingLocale() {
+      assertNull(LanguageCodes.get(null));
+   }
+
+   @Test
+   public void testBounded() {
+      for (int i = 0; i < LanguageCodes.MAX_SIZE + 10; i++) {
+         assertEquals("en", LanguageCodes.get("en-x-" + i));
+      }
+      assertTrue(LanguageCodes.size() <= LanguageCodes.MAX_SIZE);
+   }
+}
@@ -0,0 +1,137 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.config.FieldMapping;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class MappingConfigCacheTest {
+   private static final long TTL = 1000;
+
+   private final AtomicLong clock = new AtomicLong();
+   private final AtomicInteger loads = new AtomicInteger();
+   private JsonObject dataObject;
+   private MappingConfigCache cache;
+
+   private static JsonObject getObject(String name) {
+      InputStream stream = MappingConfigCacheTest.class.getResourceAsStream(name);
+      return GsonBuilder.getGsonInstance().fromJson(new InputStreamReader(stream, Charset.defaultCharset()), JsonObject.class);
+   }
+
+   @Before
+   public void setUp() {
+      JsonObject jsonData = new JsonObject();
+      jsonData.add("mappings", getObject("transformProfile.json").getAsJsonObject("connectProfile").getAsJsonObject("transform").get("fieldMap"));
+      jsonData.add("relationshipMappings", getObject("relationshipAttributeProfile.json").getAsJsonObject("connectProfile")
+            .getAsJsonObject("transform").getAsJsonObject("relationships").get("fieldMap"));
+      JsonObject properties = new JsonObject();
+      properties.addProperty("modifiedDate", "2020-07-08T05:49:11.415-0500");
+      dataObject = new JsonObject();
+      dataObject.add("properties", properties);
+      dataObject.add("jsonData", jsonData);
+      cache = new MappingConfigCache((tenantId, configId) -> {
+         loads.incrementAndGet();
+         return dataObject.deepCopy();
+      }, clock::get);
+   }
+
+   @Test
+   public void testCachedWithinTtl() throws Exception {
+      MappingConfigCache.MappingConfig config = cache.get("tenant", "gdsn_static_mappings", TTL);
+      assertEquals(53, config.getFieldMappings().size());
+      assertEquals(2, config.getRelationshipMappings().size());
+      clock.addAndGet(TTL - 1);
+      assertSame(config, cache.get("tenant", "gdsn_static_mappings", TTL));
+      assertEquals(1, loads.get());
+
+      cache.get("otherTenant", "gdsn_static_mappings", TTL);
+      assertEquals(2, loads.get());
+   }
+
+   @Test
+   public void testVersionCheckedAfterTtl() throws Exception {
+      MappingConfigCache.MappingConfig config = cache.get("tenant", "gdsn_static_mappings", TTL);
+      clock.addAndGet(TTL);
+      assertSame(config, cache.get("tenant", "gdsn_static_mappings", TTL));
+      assertEquals(2, loads.get());
+
+      dataObject.getAsJsonObject("properties").addProperty("modifiedDate", "2020-07-09T00:00:00.000-0500");
+      clock.addAndGet(TTL);
+      MappingConfigCache.MappingConfig changed = cache.get("tenant", "gdsn_static_mappings", TTL);
+      assertNotSame(config, changed);
+
+      cache.invalidate("tenant", "gdsn_static_mappings");
+      assertEquals(0, cache.lockCount());
+      cache.get("tenant", "gdsn_static_mappings", TTL);
+      assertEquals(4, loads.get());
+   }
+
+   @Test
+   public void testIdleEvicted() throws Exception {
+      cache.get("tenant", "gdsn_static_mappings", TTL);
+      clock.addAndGet(MappingConfigCache.DEFAULT_TTL_MILLIS * 5);
+      cache.get("otherTenant", "gdsn_static_mappings", TTL);
+      assertEquals(1, cache.size());
+      assertEquals(1, cache.lockCount());
+   }
+
+   @Test(expected = UnsupportedOperationException.class)
+   public void testImmutable() throws Exception {
+      cache.get("tenant", "gdsn_static_mappings", TTL).getFieldMappings().clear();
+   }
+
+   @Test
+   public void testMergeRelationshipMappings() throws Exception {
+      List<FieldMapping> relationshipFieldMap = new ArrayList<>();
+      MappingConfigCache.MappingConfig config = cache.get("tenant", "gdsn_static_mappings", TTL);
+      FieldMapGenerator.mergeRelationshipMappings(relationshipFieldMap, config);
+      FieldMapGenerator.mergeRelationshipMappings(relationshipFieldMap, config);
+      assertEquals(2, relationshipFieldMap.size());
+
+      dataObject.getAsJsonObject("properties").addProperty("modifiedDate", "2020-07-09T00:00:00.000-0500");
+      clock.addAndGet(TTL);
+      MappingConfigCache.MappingConfig changed = cache.get("tenant", "gdsn_static_mappings", TTL);
+      FieldMapGenerator.mergeRelationshipMappings(relationshipFieldMap, changed);
+      assertEquals(2, relationshipFieldMap.size());
+      for (int i = 0; i < relationshipFieldMap.size(); i++) {
+         // Copies of the mappings of the latest version, not the cached mappings.
+         assertNotSame(changed.getRelationshipMappings().get(i), relationshipFieldMap.get(i));
+         assertEquals(changed.getRelationshipMappings().get(i).getSource(), relationshipFieldMap.get(i).getSource());
+      }
+   }
+
+   @Test
+   public void testMergeRelationshipMappingsAfterReload() throws Exception {
+      FieldMapping ownMapping = GsonBuilder.getGsonInstance().fromJson("{\"source\": \"@relAttr(own, code)\"}", FieldMapping.class);
+      List<FieldMapping> relationshipFieldMap = new ArrayList<>(Collections.singletonList(ownMapping));
+      FieldMapGenerator.mergeRelationshipMappings(relationshipFieldMap, cache.get("tenant", "gdsn_static_mappings", TTL));
+
+      // Evicted and loaded again: new mapping instances replace the ones of the first load.
+      cache.invalidate("tenant", "gdsn_static_mappings");
+      FieldMapGenerator.mergeRelationshipMappings(relationshipFieldMap, cache.get("tenant", "gdsn_static_mappings", TTL));
+      assertEquals(3, relationshipFieldMap.size());
+
+      // A later version without relationship mappings leaves the own mappings of the profile only.
+      dataObject.getAsJsonObject("jsonData").remove("relationshipMappings");
+      dataObject.getAsJsonObject("properties").addProperty("modifiedDate", "2020-07-10T00:00:00.000-0500");
+      cache.invalidate("tenant", "gdsn_static_mappings");
+      FieldMapGenerator.mergeRelationshipMappings(relationshipFieldMap, cache.get("tenant", "gdsn_static_mappings", TTL));
+      assertEquals(Collections.singletonList(ownMapping), relationshipFieldMap);
+   }
+}
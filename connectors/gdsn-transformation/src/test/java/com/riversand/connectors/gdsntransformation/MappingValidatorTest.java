@@ -0,0 +1,222 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.config.FieldMapping;
+import com.riversand.rsconnect.common.config.RSConnectContext;
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.common.helpers.RSExtensionConnectContextSerializer;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MappingValidatorTest {
+   private static final String GTIN = "@path(gtin)";
+
+   private static JsonObject getObject(String name) {
+      return GsonBuilder.getGsonInstance().fromJson(new InputStreamReader(MappingValidatorTest.class.getResourceAsStream(name),
+            Charset.defaultCharset()), JsonObject.class);
+   }
+
+   private static JsonObject mappingObject(String source, String destination) {
+      JsonObject mapping = new JsonObject();
+      mapping.addProperty("source", source);
+      mapping.addProperty("destination", destination);
+      mapping.addProperty("entityType", "smtradeitem");
+      mapping.addProperty("type", "string");
+      return mapping;
+   }
+
+   private static FieldMapping mapping(JsonObject mapping) {
+      return GsonBuilder.getGsonInstance().fromJson(mapping, FieldMapping.class);
+   }
+
+   private static FieldMapping mapping(String source, String destination) {
+      return mapping(mappingObject(source, destination));
+   }
+
+   private static List<String> validate(FieldMapping... mappings) {
+      MappingValidator.Report report = MappingValidator.validate(Arrays.asList(mappings), null);
+      assertEquals(mappings.length - report.getViolations().size(), report.getFieldMappings().size());
+      return report.getViolations();
+   }
+
+   @Test
+   public void testValidMappings() {
+      List<FieldMapping> fieldMap = new ArrayList<>();
+      for (String profile : Arrays.asList("transformProfile.json", "nestedAttributeProfile.json")) {
+         JsonArray mappings = getObject(profile).getAsJsonObject("connectProfile").getAsJsonObject("transform").getAsJsonArray("fieldMap");
+         for (int i = 0; i < mappings.size(); i++) {
+            fieldMap.add(mapping(mappings.get(i).getAsJsonObject()));
+         }
+      }
+      MappingValidator.Report report = MappingValidator.validate(fieldMap, Collections.emptyList());
+      assertTrue(report.toString(), report.isValid());
+      assertSame(fieldMap, report.getFieldMappings());
+   }
+
+   @Test
+   public void testMalformedMappings() {
+      assertEquals(Collections.singletonList("mapping smtradeitem null -> @path(gtin): source is missing"), validate(mapping(null, GTIN)));
+      assertEquals("mapping smtradeitem @attr(gtin) -> null: destination is missing", validate(mapping("@attr(gtin)", null)).get(0));
+      assertTrue(validate(mapping("@attr(gtin", GTIN)).get(0).endsWith("unbalanced parentheses in source"));
+      assertTrue(validate(mapping("@attr(gtin)", "@path(gtin")).get(0).endsWith("unbalanced parentheses in destination"));
+      assertTrue(validate(mapping("@attr(gtin)", "@relPath(gtin))")).get(0).endsWith("unbalanced parentheses in destination"));
+      assertTrue(validate(mapping("@attr(gtin)", "@path(code#@#value)")).get(0).endsWith("neither UOM nor reference data"));
+      assertTrue(validate(mapping("@attr(gtin)", "@path(code[%d].list[%d].value)")).get(0).endsWith("2 %d placeholders in destination, only 1 set"));
+
+      JsonObject uom = mappingObject("@attr(netcontent)", "@path(netContent[%d].@unit#@#netContent[%d].__value__)");
+      uom.addProperty("hasUOM", true);
+      uom.addProperty("collectionType", true);
+      assertTrue(validate(mapping(uom)).isEmpty());
+      uom.addProperty("destination", "@path(a#@#b#@#c)");
+      assertTrue(validate(mapping(uom)).get(0).endsWith("more than two #@# separated destination fields"));
+
+      // Disabled mappings are never applied.
+      JsonObject disabled = mappingObject(null, GTIN);
+      disabled.addProperty("isEnabled", false);
+      assertTrue(validate(mapping(disabled)).isEmpty());
+   }
+
+   @Test
+   public void testNestedMappings() {
+      JsonObject nested = mappingObject("@attr(sm_allergen)", "@path(allergen[%d])");
+      nested.addProperty("type", "oneToTwoLevel");
+      JsonArray children = new JsonArray();
+      children.add(mappingObject("@attr(sm_allergen.group[%d].sm_allergentypecode)", "@path(allergen[%d].allergenTypeCode)"));
+      JsonObject collectionChild = mappingObject("@attr(sm_allergen.group[%d].sm_levelofcontainment)", "@path(allergen[%d].levelOfContainment[%d])");
+      collectionChild.addProperty("collectionType", true);
+      children.add(collectionChild);
+      nested.add("childFieldMappings", children);
+      assertTrue(validate(mapping(nested)).isEmpty());
+
+      // The group level sets a single index for single valued children.
+      children.add(mappingObject("@attr(sm_allergen.group[%d].sm_allergenstatement)", "@path(allergen[%d].allergenStatement[%d])"));
+      List<String> violations = validate(mapping(nested));
+      assertEquals(1, violations.size());
+      assertTrue(violations.get(0), violations.get(0).startsWith("mapping smtradeitem @attr(sm_allergen) -> @path(allergen[%d]): child mapping"));
+      assertTrue(violations.get(0).endsWith("2 %d placeholders in destination, only 1 set"));
+   }
+
+   @Test
+   public void testRelationshipMappings() {
+      JsonObject collection = mappingObject("@relAttr(isalternateof, sm_code)", "@path(referencedTradeItem[%d].code[%d])");
+      collection.addProperty("collectionType", true);
+      MappingValidator.Report report = MappingValidator.validate(null, Arrays.asList(mapping(collection),
+            mapping("@relAttr(isalternateof, sm_code)", "@path(referencedTradeItem[%d].code[%d])")));
+      assertEquals(1, report.getRelationshipMappings().size());
+      assertTrue(report.getViolations().get(0).endsWith("2 %d placeholders in destination, only 1 set"));
+   }
+
+   @Test
+   public void testQuarantine() throws Exception {
+      JsonObject profile = getObject("transformProfile.json");
+      JsonArray fieldMap = profile.getAsJsonObject("connectProfile").getAsJsonObject("transform").getAsJsonArray("fieldMap");
+      // The failing mapping comes first: applied, it would stop every mapping after it.
+      JsonArray quarantined = new JsonArray();
+      quarantined.add(mappingObject("@attr(gtin)", "@path(code[%d].list[%d].value)"));
+      quarantined.addAll(fieldMap);
+      profile.getAsJsonObject("connectProfile").getAsJsonObject("transform").add("fieldMap", quarantined);
+
+      JsonObject expected;
+      try (GDSNTransformer transformer = new GDSNTransformer(getContext("transformProfile.json", null))) {
+         expected = ((JsonRecord) transformer.transform(new JsonRecord(getObject("sourceEntity.json"), null), null)).getJsonObject();
+      }
+      try (GDSNTransformer transformer = new GDSNTransformer(getContext(profile, null))) {
+         assertEquals(expected, ((JsonRecord) transformer.transform(new JsonRecord(getObject("sourceEntity.json"), null), null)).getJsonObject());
+         assertTrue(transformer.getMetrics().getMappingErrors().isEmpty());
+      }
+   }
+
+   @Test
+   public void testGenerate() throws Exception {
+      JsonObject config = new JsonObject();
+      JsonObject jsonData = new JsonObject();
+      JsonArray mappings = new JsonArray();
+      mappings.add(mappingObject("@attr(gtin)", GTIN));
+      mappings.add(mappingObject("@attr(sm_netcontent)", "@path(netContent#@#value)"));
+      jsonData.add("mappings", mappings);
+      config.add("jsonData", jsonData);
+      MappingConfigCache cache = new MappingConfigCache((tenantId, configId) -> config, () -> 0);
+
+      JsonObject profile = getObject("transformProfile.json");
+      profile.getAsJsonObject("connectProfile").getAsJsonObject("transform").getAsJsonObject("settings")
+            .getAsJsonObject("additionalSettings").addProperty("mappingConfig", "gdsn_static_mappings");
+      FieldMapGenerator fieldMapGenerator = new FieldMapGenerator(getContext(profile, null), cache);
+      List<FieldMapping> fieldMap = fieldMapGenerator.generate(null);
+      assertEquals(1, fieldMap.size());
+      assertEquals("@attr(gtin)", fieldMap.get(0).getSource());
+      assertEquals(1, fieldMapGenerator.getValidationReport().getViolations().size());
+      assertTrue(MappingValidator.isValidated(fieldMap.get(0)));
+
+      // Validated and reported once per config version.
+      FieldMapGenerator otherGenerator = new FieldMapGenerator(getContext(profile, null), cache);
+      otherGenerator.generate(null);
+      assertSame(fieldMapGenerator.getValidationReport(), otherGenerator.getValidationReport());
+      assertFalse(cache.get(null, "gdsn_static_mappings", 0).markReported());
+
+      // Every job gets copies of the cached mappings, valid like them.
+      List<FieldMapping> otherFieldMap = fieldMapGenerator.generate(null);
+      assertNotSame(fieldMap.get(0), otherFieldMap.get(0));
+      assertNotSame(cache.get(null, "gdsn_static_mappings", 0).getFieldMappings().get(0), fieldMap.get(0));
+      assertTrue(MappingValidator.isValidated(otherFieldMap.get(0)));
+   }
+
+   @Test(expected = ConnectIllegalArgumentException.class)
+   public void testGenerateStrict() throws Exception {
+      JsonObject config = new JsonObject();
+      JsonObject jsonData = new JsonObject();
+      JsonArray mappings = new JsonArray();
+      mappings.add(mappingObject("@attr(sm_netcontent)", "@path(netContent#@#value)"));
+      jsonData.add("mappings", mappings);
+      config.add("jsonData", jsonData);
+      MappingConfigCache cache = new MappingConfigCache((tenantId, configId) -> config, () -> 0);
+
+      JsonObject profile = getObject("transformProfile.json");
+      profile.getAsJsonObject("connectProfile").getAsJsonObject("transform").getAsJsonObject("settings")
+            .getAsJsonObject("additionalSettings").addProperty("mappingConfig", "gdsn_static_mappings");
+      new FieldMapGenerator(getContext(profile, null), cache).generate(null);
+      // Rejected in strict mode, though the version was reported already.
+      new FieldMapGenerator(getContext(profile, MappingValidator.STRICT), cache).generate(null);
+   }
+
+   @Test(expected = ConnectIllegalArgumentException.class)
+   public void testStrict() throws Exception {
+      JsonObject profile = getObject("transformProfile.json");
+      profile.getAsJsonObject("connectProfile").getAsJsonObject("transform").getAsJsonArray("fieldMap")
+            .add(mappingObject("@attr(gtin)", "@path(code#@#value)"));
+      try (GDSNTransformer transformer = new GDSNTransformer(getContext(profile, MappingValidator.STRICT))) {
+         transformer.getMetrics();
+      }
+   }
+
+   private static RSConnectContext getContext(String profileName, String validation) {
+      return getContext(getObject(profileName), validation);
+   }
+
+   private static RSConnectContext getContext(JsonObject profile, String validation) {
+      if (validation != null) {
+         profile.getAsJsonObject("connectProfile").getAsJsonObject("transform").getAsJsonObject("settings")
+               .getAsJsonObject("additionalSettings").addProperty(MappingValidator.VALIDATION_SETTING, validation);
+      }
+      byte[] json = GsonBuilder.getGsonInstance().toJson(profile).getBytes(StandardCharsets.UTF_8);
+      return RSExtensionConnectContextSerializer.fromJson(null, new ByteArrayInputStream(json));
+   }
+}
@@ -0,0 +1,72 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.config.FieldMapping;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class NestedGroupPlanTest {
+   private static final String PARENT = "{\"source\": \"@attr(sm_panel)\", \"destination\": \"@path(panel[%d])\", \"type\": \"oneToThreeLevel\", "
+         + "\"childFieldMappings\": ["
+         + "{\"source\": \"@attr(sm_panel.group[%d].sm_nutrient.group[%d].sm_quantity)\", \"destination\": \"@path(panel[%d].nutrient[%d].quantity)\"},"
+         + "{\"source\": \"@attr(sm_panel.group[%d].sm_basis)\", \"destination\": \"@path(panel[%d].basis)\"},"
+         + "{\"source\": \"@attr(sm_panel.group[%d].sm_nutrient.group[%d].sm_code)\", \"destination\": \"@path(panel[%d].nutrient[%d].code)\"},"
+         + "{\"source\": \"@attr(sm_panel.group[0].sm_fixed)\", \"destination\": \"@path(panel[0].fixed)\"}"
+         + "]}";
+   private static final String ATTRIBUTES = "{\"sm_panel\": {\"group\": ["
+         + "{\"sm_basis\": {\"values\": [{\"value\": \"100g\"}]}, \"sm_nutrient\": {\"group\": ["
+         + "{\"sm_code\": {\"values\": [{\"value\": \"FAT\"}]}, \"sm_quantity\": {\"values\": [{\"value\": \"3\"}]}},"
+         + "{\"sm_code\": {\"values\": [{\"value\": \"SUGAR\"}]}}]}},"
+         + "\"not a group\","
+         + "{\"sm_nutrient\": {\"group\": [{\"sm_quantity\": {\"values\": [{\"value\": \"7\"}]}}]}}"
+         + "]}}";
+
+   private static CompiledFieldMapping getMapping() {
+      FieldMapping fieldMapping = GsonBuilder.getGsonInstance().fromJson(PARENT, FieldMapping.class);
+      return CompiledFieldMapping.compile(fieldMapping, new MappingCatalog());
+   }
+
+   @Test
+   public void testGroupPath() {
+      assertEquals(Arrays.asList("a", "b", "c"), Arrays.asList(SourcePath.compile("a.group[%d].b.group[%d].c").getGroupPath()));
+      assertEquals(Arrays.asList("a", "b"), Arrays.asList(SourcePath.compile("a.group[%d].b").getGroupPath()));
+      assertNull(SourcePath.compile("a").getGroupPath());
+      assertNull(SourcePath.compile("a.group[0].b").getGroupPath());
+      assertNull(SourcePath.compile("a.items[%d].b").getGroupPath());
+   }
+
+   @Test
+   public void testTraverseVisitsEveryGroupOnce() {
+      JsonObject attributes = GsonBuilder.getGsonInstance().fromJson(ATTRIBUTES, JsonObject.class);
+      List<String> visits = new ArrayList<>();
+      getMapping().getGroups().traverse(attributes, (mapping, attribute, parentIndices, depth) -> {
+         String value = SourceValueExtractor.getString(SourcePath.valuesOf(attribute), 0, "value");
+         visits.add(mapping.getDestination() + " " + Arrays.toString(Arrays.copyOf(parentIndices, depth)) + " " + value);
+      });
+
+      // Children of a group in configuration order, then the next level; the fixed index child is not matched.
+      assertEquals(Arrays.asList(
+            "@path(panel[%d].basis) [0] 100g",
+            "@path(panel[%d].nutrient[%d].quantity) [0, 0] 3",
+            "@path(panel[%d].nutrient[%d].code) [0, 0] FAT",
+            "@path(panel[%d].nutrient[%d].code) [0, 1] SUGAR",
+            "@path(panel[%d].nutrient[%d].quantity) [2, 0] 7"), visits);
+   }
+
+   @Test
+   public void testTraverseWithoutParentAttribute() {
+      List<String> visits = new ArrayList<>();
+      getMapping().getGroups().traverse(new JsonObject(), (mapping, attribute, parentIndices, depth) -> visits.add(mapping.getSource()));
+      getMapping().getGroups().traverse(null, (mapping, attribute, parentIndices, depth) -> visits.add(mapping.getSource()));
+      assertEquals(0, visits.size());
+   }
+}
@@ -0,0 +1,64 @@
+package com.riversand.connectors.gdsntransformation;
+
+import org.junit.Test;
+
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OutputDocumentTest {
+   private final StringBuilder builder = new StringBuilder();
+   private final OutputDocument document = new OutputDocument();
+   private final JsonRecord expected = new JsonRecord();
+
+   private void write(DestinationTemplate template, String value, String type, int... indices) {
+      document.setValue(template, indices, indices.length, value, type);
+      expected.setValue(template.render(builder, indices, indices.length), value, type, true);
+   }
+
+   @Test
+   public void testSameDocumentAsRecord() {
+      DestinationTemplate claim = DestinationTemplate.compile("@path(tradeItemInformation[0].extension[0].animalFeedingModule[%d].animalNutritionalClaim[%d])");
+      DestinationTemplate languageCode = DestinationTemplate.compile("@path(description[%d])").append(".@languageCode");
+      DestinationTemplate description = DestinationTemplate.compile("@path(description[%d].__value__)");
+      DestinationTemplate flag = DestinationTemplate.compile("displayUnitInformation[0].hasDisplayReadyPackaging");
+      assertTrue(claim.isSegmented());
+
+      write(claim, "c0", "string", 0, 0);
+      write(claim, "c1", "string", 0, 1);
+      write(claim, "c3", "string", 0, 3);
+      write(claim, "d0", "string", 1, 0);
+      write(claim, "c2", "string", 0, 2);
+      write(languageCode, "en", "string", 0);
+      write(description, "first", "string", 0);
+      write(languageCode, "fr", "string", 1);
+      write(description, "premier", "string", 1);
+      write(flag, "true", "boolean");
+      write(description, null, "string", 2);
+      assertEquals(expected.getJsonObject(), document.getRecord().getJsonObject());
+   }
+
+   @Test
+   public void testReplacedNodes() {
+      DestinationTemplate leaf = DestinationTemplate.compile("@path(packaging[%d])");
+      DestinationTemplate nested = DestinationTemplate.compile("@path(packaging[%d].material[%d])");
+      write(nested, "glass", "string", 0, 0);
+      // Replaces the object the cursor of the nested destination points to.
+      write(leaf, "none", "string", 0);
+      write(nested, "paper", "string", 0, 1);
+      document.setValue("packaging[1].material[0]", "metal", "string");
+      expected.setValue("packaging[1].material[0]", "metal", "string", true);
+      write(nested, "wood", "string", 1, 1);
+      assertEquals(expected.getJsonObject(), document.getRecord().getJsonObject());
+   }
+
+   @Test
+   public void testPathNotSegmented() {
+      DestinationTemplate template = DestinationTemplate.compile("@path(code[%d]_text.value)");
+      assertFalse(template.isSegmented());
+      write(template, "a", "string", 2);
+      assertEquals(expected.getJsonObject(), document.getRecord().getJsonObject());
+   }
+}
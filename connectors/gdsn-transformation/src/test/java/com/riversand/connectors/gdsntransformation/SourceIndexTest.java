@@ -0,0 +1,42 @@
+package com.riversand.connectors.gdsntransformation;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SourceIndexTest {
+   private static final String ENTITY = "{\"id\": \"e1\", \"type\": \"smtradeitem\", \"data\": {"
+         + "\"attributes\": {\"gtin\": {\"values\": [{\"value\": \"0001\", \"locale\": \"en-US\"}]}},"
+         + "\"relationships\": {\"childgtins\": [{\"id\": \"c1\"}]}}}";
+
+   private static SourceIndex getIndex() {
+      return new SourceIndex(new JsonRecord(GsonBuilder.getGsonInstance().fromJson(ENTITY, JsonObject.class), null));
+   }
+
+   @Test
+   public void testEntity() {
+      SourceIndex index = getIndex();
+      JsonObject data = index.getRecord().getJsonObject().getAsJsonObject("data");
+      assertSame(data.get("attributes"), index.getAttributes(null));
+      assertSame(index.getAttributes(null), index.getAttributes(""));
+      assertSame(data.get("relationships"), index.getRelationships(null));
+      assertNull(index.getAttributes("missing"));
+      assertNull(index.getRelationships("missing"));
+   }
+
+   @Test
+   public void testFindArray() {
+      SourceIndex index = getIndex();
+      assertEquals("0001", index.findArray("data.attributes.gtin.values").get(0).getAsJsonObject().get("value").getAsString());
+      assertSame(index.findArray("data.attributes.gtin.values"), index.findArray("data.attributes.gtin.values"));
+      assertNull(index.findArray("data.attributes.name.values"));
+      assertNull(index.findArray("data.attributes.name.values"));
+   }
+}
@@ -0,0 +1,74 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+import org.junit.Test;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.config.FieldMapping;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SourceValueExtractorTest {
+   private static JsonObject getAttributes() {
+      InputStream entityStream = SourceValueExtractorTest.class.getResourceAsStream("sourceEntity.json");
+      JsonObject entity = GsonBuilder.getGsonInstance().fromJson(new InputStreamReader(entityStream, Charset.defaultCharset()), JsonObject.class);
+      JsonObject attributes = SourceValueExtractor.getAttributes(entity, null);
+      assertNotNull(attributes);
+      return attributes;
+   }
+
+   @Test
+   public void testFlatAttribute() {
+      JsonArray values = SourcePath.compile("gtin").getValues(getAttributes());
+      assertNotNull(values);
+      assertEquals("345678901234567", SourceValueExtractor.getString(values, 0, "value"));
+      assertEquals("en-US", SourceValueExtractor.getString(values, 0, SourceValueExtractor.LOCALE));
+      assertNull(SourceValueExtractor.getString(values, 1, "value"));
+   }
+
+   @Test
+   public void testNestedAttribute() {
+      SourcePath path = SourcePath.compile("sm_animalnutrientdetail.group[%d].sm_animalnutrienttypecode");
+      JsonArray values = path.getValues(getAttributes(), 0);
+      assertEquals("Carbon Monoxide", SourceValueExtractor.getString(values, 0, "value"));
+      assertEquals("G_CMO", SourceValueExtractor.getReferenceDataIdentifier(values, 0));
+      assertNull(path.getValues(getAttributes(), 5));
+      assertNull(path.getValues(getAttributes()));
+   }
+
+   @Test
+   public void testCollectionValues() {
+      FieldMapping fieldMapping = GsonBuilder.getGsonInstance().fromJson("{\"source\": \"@attr(sm_amount)\", "
+            + "\"destination\": \"@path(amount[%d].@measurementUnitCode#@#amount[%d].__value__)\", \"hasUOM\": true, \"collectionType\": true}", FieldMapping.class);
+      JsonArray values = GsonBuilder.getGsonInstance().fromJson("[{\"value\": \"1||2\", \"locale\": \"en-US\"}, "
+            + "{\"value\": \"3\", \"uom\": \"KGM\"}, {\"value\": \"\"}, {\"value\": \"4\"}]", JsonArray.class);
+      SourceValues sourceValues = new SourceValues();
+      SourceValueExtractor.extract(values, CompiledFieldMapping.compile(fieldMapping, new MappingCatalog()), sourceValues);
+
+      // Values are kept whole, even when they contain the collection separator, up to the first empty one.
+      assertEquals(2, sourceValues.size());
+      assertEquals("1||2", sourceValues.getValue(0));
+      assertNull(sourceValues.getUOM(0));
+      assertEquals("3", sourceValues.getValue(1));
+      assertEquals("KGM", sourceValues.getUOM(1));
+      // Not localizable, so the locale is not read.
+      assertNull(sourceValues.getLocale(0));
+
+      SourceValueExtractor.extract(null, CompiledFieldMapping.compile(fieldMapping, new MappingCatalog()), sourceValues);
+      assertTrue(sourceValues.isEmpty());
+   }
+
+   @Test
+   public void testMissingAttribute() {
+      assertNull(SourcePath.compile("sm_unknown").getValues(getAttributes()));
+   }
+}
@@ -0,0 +1,80 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.config.RSConnectContext;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.common.helpers.RSExtensionConnectContextSerializer;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+/**
+ * Entities, transformer and NDJSON files shared by the transformer, pipeline and bulk transform tests.
+ */
+final class TransformFixtures {
+   private static final Gson gson = GsonBuilder.getGsonInstance();
+
+   private TransformFixtures() {
+   }
+
+   /**
+    * Get the sample source entity with a GTIN of its own.
+    */
+   static JsonObject getEntity(int index) {
+      JsonObject entity = gson.fromJson(new InputStreamReader(TransformFixtures.class.getResourceAsStream("sourceEntity.json"), StandardCharsets.UTF_8), JsonObject.class);
+      entity.getAsJsonObject("data").getAsJsonObject("attributes").getAsJsonObject("gtin").getAsJsonArray("values")
+            .get(0).getAsJsonObject().addProperty("value", "gtin-" + index);
+      return entity;
+   }
+
+   /**
+    * Remove the locale of the localizable {@code sm_animalnutritionalclaim} value, so its mapping fails.
+    *
+    * @return the entity
+    */
+   static JsonObject removeLocale(JsonObject entity) {
+      entity.getAsJsonObject("data").getAsJsonObject("attributes").getAsJsonObject("sm_animalnutritionalclaim")
+            .getAsJsonArray("values").get(0).getAsJsonObject().remove("locale");
+      return entity;
+   }
+
+   static GDSNTransformer getTransformer() {
+      RSConnectContext connectContext = RSExtensionConnectContextSerializer.fromJson(null, TransformFixtures.class.getResourceAsStream("transformProfile.json"));
+      return new GDSNTransformer(connectContext);
+   }
+
+   /**
+    * Write one line per index to an NDJSON file.
+    */
+   static void writeLines(Path file, int count, IntFunction<String> lines) throws IOException {
+      try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+         for (int i = 0; i < count; i++) {
+            writer.write(lines.apply(i));
+            writer.newLine();
+         }
+      }
+   }
+
+   /**
+    * Get the serialized output of every entity but the one of the failing line, transformed one by one.
+    */
+   static List<String> getExpected(GDSNTransformer transformer, int count, int failingLine, IntFunction<JsonObject> entities) {
+      List<String> expected = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+         if (i != failingLine) {
+            expected.add(gson.toJson(((JsonRecord) transformer.transform(new JsonRecord(entities.apply(i), null), null)).getJsonObject()));
+         }
+      }
+      return expected;
+   }
+}
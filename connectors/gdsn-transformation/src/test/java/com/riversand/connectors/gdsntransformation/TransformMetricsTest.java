@@ -0,0 +1,98 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.config.RSConnectContext;
+import com.riversand.rsconnect.common.helpers.ConnectRuntimeException;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.common.helpers.RSExtensionConnectContextSerializer;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TransformMetricsTest {
+
+   private static GDSNTransformer getTransformer(String profileName) {
+      InputStream contextStream = TransformMetricsTest.class.getResourceAsStream(profileName);
+      RSConnectContext connectContext = RSExtensionConnectContextSerializer.fromJson(null, contextStream);
+      return new GDSNTransformer(connectContext);
+   }
+
+   private static JsonRecord getRecord() {
+      InputStream entityStream = TransformMetricsTest.class.getResourceAsStream("sourceEntity.json");
+      return new JsonRecord(GsonBuilder.getGsonInstance().fromJson(new InputStreamReader(entityStream, Charset.defaultCharset()), JsonObject.class), null);
+   }
+
+   @Test
+   public void testRecordAndMappingCounters() throws Exception {
+      try (GDSNTransformer transformer = getTransformer("transformProfile.json")) {
+         transformer.transform(getRecord(), null);
+         transformer.transform(getRecord(), null);
+         try {
+            transformer.transform(new JsonRecord(new JsonObject(), null), null);
+            fail();
+         } catch (ConnectRuntimeException ex) {
+            // Counted as failed record
+         }
+
+         TransformMetrics metrics = transformer.getMetrics();
+         assertEquals(2, metrics.getRecordCount());
+         assertEquals(1, metrics.getFailedRecordCount());
+         assertEquals(Long.valueOf(2), metrics.getEntityTypeCounts().get("smtradeitem"));
+         long histogramCount = 0;
+         for (Long count : metrics.getLatencyHistogram().values()) {
+            histogramCount += count;
+         }
+         assertEquals(2, histogramCount);
+         assertEquals(Long.valueOf(2), metrics.getMappingHits().get("0: @attr(gtin) -> @path(gtin)"));
+         assertTrue(metrics.getMappingErrors().isEmpty());
+
+         metrics.reset();
+         assertEquals(0, metrics.getRecordCount());
+         assertTrue(metrics.getMappingHits().isEmpty());
+      }
+   }
+
+   @Test
+   public void testRelationshipCounters() throws Exception {
+      try (GDSNTransformer transformer = getTransformer("relationshipAttributeProfile.json")) {
+         transformer.transform(getRecord(), null);
+         Map<String, Long> hits = transformer.getMetrics().getMappingHits();
+         Map<String, Long> misses = transformer.getMetrics().getMappingMisses();
+         // Three child GTIN relationships, the second one without related entity data.
+         assertEquals(Long.valueOf(3), hits.get("0: @relAttr(childgtins, totalQuantityOfNextLowerLevelTradeItem) -> @relPath(nextLowerLevelTradeItemInformation.childTradeItem[%d], quantityOfNextLowerLevelTradeItem)"));
+         assertEquals(Long.valueOf(2), hits.get("1: @relToAttr(childgtins, tradeitem, gtin) -> @relPath(nextLowerLevelTradeItemInformation.childTradeItem[%d], gtin)"));
+         assertEquals(Long.valueOf(1), misses.get("1: @relToAttr(childgtins, tradeitem, gtin) -> @relPath(nextLowerLevelTradeItemInformation.childTradeItem[%d], gtin)"));
+      }
+   }
+
+   @Test
+   public void testJmxRegistry() throws Exception {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName query = new ObjectName("com.riversand.connectors.gdsntransformation:type=TransformMetrics,profile=\"metricsTest\",*");
+      try (GDSNTransformer transformer = getTransformer("transformProfile.json")) {
+         transformer.transform(getRecord(), null);
+         JmxTransformMetricsRegistry registry = new JmxTransformMetricsRegistry();
+         registry.register("metricsTest", transformer.getMetrics());
+         Set<ObjectName> names = server.queryNames(query, null);
+         assertEquals(1, names.size());
+         assertEquals(1L, server.getAttribute(names.iterator().next(), "RecordCount"));
+         registry.unregister("metricsTest", transformer.getMetrics());
+         assertTrue(server.queryNames(query, null).isEmpty());
+      }
+   }
+}
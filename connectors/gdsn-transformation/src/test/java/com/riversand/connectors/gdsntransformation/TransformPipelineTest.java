@@ -0,0 +1,142 @@
+package com.riversand.connectors.gdsntransformation;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import com.riversand.rsconnect.common.helpers.ConnectIllegalArgumentException;
+import com.riversand.rsconnect.common.helpers.ConnectRuntimeException;
+import com.riversand.rsconnect.common.helpers.GsonBuilder;
+import com.riversand.rsconnect.interfaces.models.JsonRecord;
+
+import static org.junit.Assert.assertEquals;
+
+public class TransformPipelineTest {
+   private static final int RECORDS = 50;
+   private static final Gson gson = GsonBuilder.getGsonInstance();
+
+   @Rule
+   public TemporaryFolder folder = new TemporaryFolder();
+
+   /**
+    * Stand-in for a collect source: one entity per line.
+    */
+   private Path writeSource(int failingLine) throws Exception {
+      Path source = folder.newFile("source.ndjson").toPath();
+      TransformFixtures.writeLines(source, RECORDS, i -> i == failingLine ? "{}" : gson.toJson(TransformFixtures.getEntity(i)));
+      return source;
+   }
+
+   private long run(TransformPipeline pipeline, Path source, Path target) throws Exception {
+      try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+           BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+         return pipeline.run(reader.lines().iterator(),
+               line -> new JsonRecord(gson.fromJson(line, JsonObject.class), null),
+               record -> gson.toJson(((JsonRecord) record).getJsonObject()),
+               line -> {
+                  writer.write(line);
+                  writer.newLine();
+               });
+      }
+   }
+
+   private static List<String> getExpected(GDSNTransformer transformer, int failingLine) {
+      return TransformFixtures.getExpected(transformer, RECORDS, failingLine, TransformFixtures::getEntity);
+   }
+
+   @Test
+   public void testOrderedPipeline() throws Exception {
+      Path source = writeSource(-1);
+      Path target = folder.getRoot().toPath().resolve("target.ndjson");
+      try (GDSNTransformer transformer = TransformFixtures.getTransformer();
+           TransformPipeline pipeline = new TransformPipeline(transformer, 4, 8, true)) {
+         assertEquals(RECORDS, run(pipeline, source, target));
+         assertEquals(getExpected(transformer, -1), Files.readAllLines(target, StandardCharsets.UTF_8));
+         for (String stage : new String[]{TransformPipeline.PARSE, TransformPipeline.TRANSFORM, TransformPipeline.SERIALIZE}) {
+            assertEquals(RECORDS, pipeline.getStageStats().get(stage).getCount());
+         }
+      }
+   }
+
+   @Test
+   public void testUnorderedPipelineSkipsFailedRecords() throws Exception {
+      Path source = writeSource(7);
+      Path target = folder.getRoot().toPath().resolve("target.ndjson");
+      ExecutorService executor = Executors.newFixedThreadPool(5);
+      try (GDSNTransformer transformer = TransformFixtures.getTransformer();
+           TransformPipeline pipeline = new TransformPipeline(transformer, executor, 3, 4, false)) {
+         assertEquals(RECORDS - 1, run(pipeline, source, target));
+         assertEquals(new HashSet<>(getExpected(transformer, 7)), new HashSet<>(Files.readAllLines(target, StandardCharsets.UTF_8)));
+         assertEquals(RECORDS, pipeline.getStageStats().get(TransformPipeline.TRANSFORM).getCount());
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testErrorSink() throws Exception {
+      Path source = folder.newFile("source.ndjson").toPath();
+      TransformFixtures.writeLines(source, RECORDS, i -> {
+         JsonObject entity = TransformFixtures.getEntity(i);
+         return gson.toJson(i % 10 == 3 ? TransformFixtures.removeLocale(entity) : entity);
+      });
+      Map<Long, TransformErrors> errors = new TreeMap<>();
+      try (GDSNTransformer transformer = TransformFixtures.getTransformer();
+           BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+           TransformPipeline pipeline = new TransformPipeline(transformer, 3, 4, false)) {
+         long published = pipeline.run(reader.lines().iterator(),
+               line -> new JsonRecord(gson.fromJson(line, JsonObject.class), null),
+               record -> record,
+               record -> {
+               },
+               errors::put);
+         assertEquals(RECORDS, published);
+      }
+      assertEquals(Arrays.asList(3L, 13L, 23L, 33L, 43L), new ArrayList<>(errors.keySet()));
+      for (TransformErrors recordErrors : errors.values()) {
+         assertEquals("@attr(sm_animalnutritionalclaim)", recordErrors.getErrors().get(0).getSource());
+      }
+   }
+
+   @Test(expected = ConnectRuntimeException.class)
+   public void testSinkFailureStopsPipeline() throws Exception {
+      Path source = writeSource(-1);
+      try (GDSNTransformer transformer = TransformFixtures.getTransformer();
+           BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8);
+           TransformPipeline pipeline = new TransformPipeline(transformer, 2, 2, true)) {
+         pipeline.run(reader.lines().iterator(),
+               line -> new JsonRecord(gson.fromJson(line, JsonObject.class), null),
+               record -> record,
+               record -> {
+                  throw new IllegalStateException("Publish failed");
+               });
+      }
+   }
+
+   @Test(expected = ConnectIllegalArgumentException.class)
+   public void testExecutorTooSmall() throws Exception {
+      ExecutorService executor = Executors.newFixedThreadPool(2);
+      try (GDSNTransformer transformer = TransformFixtures.getTransformer()) {
+         new TransformPipeline(transformer, executor, 2, 4, true).close();
+      } finally {
+         executor.shutdown();
+      }
+   }
+}